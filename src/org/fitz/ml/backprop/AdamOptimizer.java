@@ -0,0 +1,61 @@
+package org.fitz.ml.backprop;
+
+/**
+ * This class updates the weights with Adam: running averages of the gradient (m) and of the
+ * squared gradient (v) of each weight, corrected for their bias towards 0 after t updates
+ *   mji = β1 * mji + (1 - β1) * gji
+ *   vji = β2 * vji + (1 - β2) * gji^2
+ *   wji = wji + eta * (mji / (1 - β1^t)) / (sqrt(vji / (1 - β2^t)) + ε)
+ * The momentum is not used.
+ */
+public class AdamOptimizer implements Optimizer {
+    private double means[][];       //running average of the gradient of each weight
+    private double meanSquares[][]; //running average of the squared gradient of each weight
+    private double β1t[];           //β1^t of each layer
+    private double β2t[];           //β2^t of each layer
+    private double β1;
+    private double β2;
+    private double ε;
+
+    /**
+     * @param network the network whose weights are updated
+     * @param β1 the decay of the average of the gradients
+     * @param β2 the decay of the average of the squared gradients
+     * @param ε a small value that keeps the division finite
+     */
+    public AdamOptimizer(FeedForwardNetwork network, double β1, double β2, double ε){
+        this.β1 = β1;
+        this.β2 = β2;
+        this.ε = ε;
+        int numLayers = network.getNumLayers();
+        means = new double[numLayers][];
+        meanSquares = new double[numLayers][];
+        β1t = new double[numLayers];
+        β2t = new double[numLayers];
+        for (int layer = 0; layer < numLayers; layer++) {
+            means[layer] = new double[network.getWeights(layer).length];
+            meanSquares[layer] = new double[network.getWeights(layer).length];
+            β1t[layer] = 1;
+            β2t[layer] = 1;
+        }
+    }
+
+    @Override
+    public void update(int layer, double w[], double gradient[], double scale, double eta, double momentum) {
+        double m[] = means[layer];
+        double v[] = meanSquares[layer];
+        β1t[layer] *= β1;
+        β2t[layer] *= β2;
+        double stepSize = eta / (1 - β1t[layer]);
+        double correction2 = 1 / (1 - β2t[layer]);
+
+        for (int ji = 0; ji < w.length; ji++) {
+            double gji = gradient[ji] * scale;
+            double mji = β1 * m[ji] + (1 - β1) * gji;
+            double vji = β2 * v[ji] + (1 - β2) * gji * gji;
+            w[ji] += stepSize * mji / (Math.sqrt(vji * correction2) + ε);
+            m[ji] = mji;
+            v[ji] = vji;
+        }
+    }
+}
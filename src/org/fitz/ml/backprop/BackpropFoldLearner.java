@@ -0,0 +1,66 @@
+package org.fitz.ml.backprop;
+
+import org.fitz.ml.data.Fold;
+import org.fitz.ml.data.FoldLearner;
+import org.fitz.ml.data.FoldResult;
+
+import java.util.List;
+
+/**
+ * This class cross validates the Backpropagation algorithm.
+ * Each fold trains its own network with runKFoldBackprop on a view of the training examples
+ * and reports the smallest validation error, the iterations where it was found
+ * and the accuracy on the validation examples.
+ * The training settings (batch size, activation functions, optimizer, early stopping
+ * and validation) are copied from a template Backpropagation object.
+ */
+public class BackpropFoldLearner implements FoldLearner {
+    private List<Example> examples;
+    private double eta;
+    private int nIn;
+    private int nOut;
+    private int hidden[];
+    private int iterations;
+    private double momentum;
+    private Backpropagation settings;
+    private boolean useWeightDecay;
+
+    /**
+     * @param examples all examples (not modified)
+     * @param eta the learning rate
+     * @param nIn the number of inputs
+     * @param nOut the number of outputs
+     * @param hidden the number of units in each hidden layer
+     * @param iterations the number of iterations per fold
+     * @param momentum the momentum used to specify the dependence on the previous weight update
+     * @param settings the object whose training settings are copied for each fold (not trained)
+     * @param useWeightDecay boolean specifying whether to use weight decay
+     */
+    public BackpropFoldLearner(List<Example> examples, double eta, int nIn, int nOut, int hidden[], int iterations,
+                               double momentum, Backpropagation settings, boolean useWeightDecay) {
+        this.examples = examples;
+        this.eta = eta;
+        this.nIn = nIn;
+        this.nOut = nOut;
+        this.hidden = hidden;
+        this.iterations = iterations;
+        this.momentum = momentum;
+        this.settings = settings;
+        this.useWeightDecay = useWeightDecay;
+    }
+
+    @Override
+    public FoldResult learn(Fold fold) {
+        List<Example> validationSet = fold.validation(examples);
+        Backpropagation bp = new Backpropagation();
+        bp.copySettings(settings);
+        bp.runKFoldBackprop(fold.training(examples), eta, nIn, nOut, hidden, iterations, momentum, validationSet, useWeightDecay);
+
+        FoldResult result = new FoldResult(fold);
+        result.setOptimalIterations(bp.getOptimalIterations());
+        result.setIterations(bp.getIterationsRun());
+        result.setError(bp.getValidationError());
+        result.setAccuracy(bp.getAccuracy(validationSet));
+        return result;
+    }
+}
@@ -2,7 +2,10 @@ package org.fitz.ml.backprop;
 
 import org.fitz.ml.constants.AnnConstants;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 /**
  * This class facilitates the execution of the backpropagation algorithm
@@ -12,285 +15,382 @@ public class Backpropagation {
 
     public Backpropagation(){}
 
-    private double prevOutputDeltaWji = 0;
-    private double prevHiddenDeltaWji = 0;
+    /**
+     * This constructor creates an object that trains an existing network
+     * (for example a replica of a network shared by several threads)
+     * @param network the network to train
+     */
+    Backpropagation(FeedForwardNetwork network){
+        this.network = network;
+        this.workspace = network.newWorkspace();
+        this.optimizer = optimizerType.create(network);
+    }
+
     private FeedForwardNetwork network;
+    private Workspace workspace; //buffers reused for every example propagated through the network
     private int optimalIterations = 0;
     private double prevValidationError = Double.MAX_VALUE;
+    private int patience = AnnConstants.NO_EARLY_STOPPING;
+    private int iterationsRun = 0;
+    private int validationInterval = 1;   //epochs between validation errors
+    private int validationSampleSize = 0; //examples of the validation set to evaluate (0 = all)
+    private boolean asyncValidation = false;
     private double accuracy = 0;
+    private int batchSize = AnnConstants.BATCH_SIZE;
+    private double gradients[][]; //gradient of each weight accumulated over a mini-batch (or of the last example)
+    private OptimizerType optimizerType = OptimizerType.SGD;
+    private Optimizer optimizer; //state of the weight updates (e.g. the previous update of each weight)
+    private Activation hiddenActivation = Activation.SIGMOID;
+    private Activation outputActivation = Activation.SIGMOID;
+
+    /**
+     * This method performs the Backpropagation algorithm on a network with one hidden layer
+     * @see #runBackprop(List, double, int, int, int[], int, double, boolean)
+     */
+    public void runBackprop(List<Example> examples, double eta, int nIn, int nOut, int nHidden, int iterations, double momentum, boolean useWeightDecay ) {
+        runBackprop(examples, eta, nIn, nOut, new int[]{nHidden}, iterations, momentum, useWeightDecay);
+    }
 
     /**
-     * This method performs the stochastic version of the Backpropagation algorithm
+     * This method performs the Backpropagation algorithm.
+     * By default it uses the stochastic version (the weights are updated after each example);
+     * see setBatchSize for the mini-batch and full-batch versions
      * @param examples the list of training examples
      * @param eta the learning rate
      * @param nIn the number of inputs
      * @param nOut the number of outputs
-     * @param nHidden the number of hidden units
+     * @param hidden the number of units in each hidden layer
      * @param iterations the number of iterations
      * @param momentum the momentum used to specify the dependence on the previous weight update
      */
-    public void runBackprop(ArrayList<Example> examples, double eta, int nIn, int nOut, int nHidden, int iterations, double momentum, boolean useWeightDecay ) {
-        network = new FeedForwardNetwork(nIn, nHidden, nOut);
-        ArrayList<Unit> hiddenLayer = network.getHiddenLayer();
-        ArrayList<Unit> outputLayer = network.getOutputLayer();
-
-        for (int i = 0; i < iterations; i++) {
-
-            for (Example example : examples) {
-            //1.  Input the instance x to the network
-                network.setX(example.getX()); //propagate the input x through hidden layer
-                network.setT(example.getT());
-                double newX[] = getHiddenOutput(hiddenLayer);
-
-
-            //2. For each output k, compute its error term δk
-                for (Unit k : outputLayer) {
-                    k.setX(newX); //propagate new x through output layer
-                    int nodeIndex = outputLayer.indexOf(k);
-                    k.setError(k.δ(nodeIndex + 1));
-                }
-
-            //3. For each hidden unit h,  calculate its error term  δh
-                for (Unit h : hiddenLayer) {
-                    double oh = h.getOutput();
-                    int nodeIndex = hiddenLayer.indexOf(h);
-                    //find ∑        wkh * δk
-                    ///    k in outputs
-                    double outputErrorSum = getErrorSum(outputLayer, nodeIndex + 1); //skip w0 [w1,w2,w3..wn]
-                    double δh = oh * (1 - oh) * outputErrorSum;
-                    h.setError(δh);
-                }
-
-            //4. Update each network weight wji
-                updateOutputWeights(outputLayer, eta, momentum, useWeightDecay);
-                updateHiddenWeights(hiddenLayer, eta, momentum, useWeightDecay);
+    public void runBackprop(List<Example> examples, double eta, int nIn, int nOut, int hidden[], int iterations, double momentum, boolean useWeightDecay ) {
+        createNetwork(nIn, hidden, nOut);
 
+        for (int i = 0; i < iterations; i++)
+            trainEpoch(examples, 0, examples.size(), eta, momentum, useWeightDecay);
 
-            }
+    }
 
-        }
 
+    /**
+     * This method performs the Backpropagation algorithm on examples streamed from a file.
+     * Every iteration is a pass over the file, one chunk of examples at a time, so the file does not
+     * have to fit in memory and is parsed while the network is trained on the previous chunk.
+     * A mini-batch does not span two chunks, so the chunk size should be a multiple of the batch size
+     * (full batch makes one update per chunk)
+     * @param stream the training examples
+     * @param eta the learning rate
+     * @param nIn the number of inputs
+     * @param nOut the number of outputs
+     * @param hidden the number of units in each hidden layer
+     * @param iterations the number of iterations
+     * @param momentum the momentum used to specify the dependence on the previous weight update
+     * @param useWeightDecay boolean specifying whether to use weight decay
+     * @throws IOException if the file cannot be read
+     */
+    public void runBackprop(ExampleStream stream, double eta, int nIn, int nOut, int hidden[], int iterations, double momentum, boolean useWeightDecay) throws IOException {
+        createNetwork(nIn, hidden, nOut);
+
+        try {
+            for (int i = 0; i < iterations; i++) {
+                stream.open();
+                List<Example> chunk;
+                while ((chunk = stream.nextChunk()) != null)
+                    trainEpoch(chunk, 0, chunk.size(), eta, momentum, useWeightDecay);
+            }
+        } finally {
+            stream.close();
+        }
     }
 
 
     /**
-     * This method performs the stochastic version of the Backpropagation algorithm.
-     * It uses a validation set to determine the number of iterations with the least error
+     * This method performs the Backpropagation algorithm on a network with one hidden layer,
+     * using a validation set to determine the number of iterations with the least error
+     * @see #runKFoldBackprop(List, double, int, int, int[], int, double, List, boolean)
+     */
+    public void runKFoldBackprop(List<Example> examples, double eta, int nIn, int nOut, int nHidden, int iterations, double momentum, List<Example> validationSet, boolean useWeightDecay) {
+        runKFoldBackprop(examples, eta, nIn, nOut, new int[]{nHidden}, iterations, momentum, validationSet, useWeightDecay);
+    }
+
+    /**
+     * This method performs the Backpropagation algorithm (stochastic, mini-batch or full-batch).
+     * It uses a validation set to determine the number of iterations with the least error.
+     * With early stopping (see setPatience) the weights with the least error are copied whenever
+     * the error improves, training stops once the error has not improved for patience iterations,
+     * and the network is left with the best weights, so it does not need to be trained again
      * @param examples the list of training examples
      * @param eta the learning rate
      * @param nIn the number of inputs
      * @param nOut the number of outputs
-     * @param nHidden the number if hidden units
+     * @param hidden the number of units in each hidden layer
      * @param iterations the number of iterations
      * @param momentum the momentum used to specify the dependence on the previous weight update
      * @param validationSet validation set to use to determine number of iterations with small(est) error
      * @param useWeightDecay boolean specifying whether to use weight decay
      */
-    public void runKFoldBackprop(ArrayList<Example> examples, double eta, int nIn, int nOut, int nHidden, int iterations, double momentum, ArrayList<Example> validationSet, boolean useWeightDecay) {
-        network = new FeedForwardNetwork(nIn, nHidden, nOut);
-        ArrayList<Unit> hiddenLayer = network.getHiddenLayer();
-        ArrayList<Unit> outputLayer = network.getOutputLayer();
-        double currentValidationError;
-
-        for (int i = 0; i < iterations; i++) {
-
-            for (Example example : examples) {
-                //1.  Input the instance x to the network
-                network.setX(example.getX()); //propagate the input x through hidden layer
-                network.setT(example.getT());
-                double newX[] = getHiddenOutput(hiddenLayer);
-
-
-                //2. For each output k, compute its error term δk
-                for (Unit k : outputLayer) {
-                    k.setX(newX); //propagate new x through output layer
-                    int nodeIndex = outputLayer.indexOf(k);
-                    k.setError(k.δ(nodeIndex + 1));
-                }
-
-                //3. For each hidden unit h,  calculate its error term  δh
-                for (Unit h : hiddenLayer) {
-                    double oh = h.getOutput();
-                    int nodeIndex = hiddenLayer.indexOf(h);
-                    //find ∑        wkh * δk
-                    ///    k in outputs
-                    double outputErrorSum = getErrorSum(outputLayer, nodeIndex + 1); //skip w0 [w1,w2,w3..wn]
-                    double δh = oh * (1 - oh) * outputErrorSum;
-                    h.setError(δh);
-                }
-
-                //4. Update each network weight wji
-                updateOutputWeights(outputLayer, eta, momentum, useWeightDecay);
-                updateHiddenWeights(hiddenLayer, eta, momentum, useWeightDecay);
-
+    public void runKFoldBackprop(List<Example> examples, double eta, int nIn, int nOut, int hidden[], int iterations, double momentum, List<Example> validationSet, boolean useWeightDecay) {
+        createNetwork(nIn, hidden, nOut);
+        iterationsRun = 0;
+
+        //use error of validation set to determine ideal iterations
+        ValidationEvaluator evaluator = new ValidationEvaluator(network, validationSet);
+        evaluator.setInterval(validationInterval);
+        evaluator.setSampleSize(validationSampleSize, new Random());
+        evaluator.setKeepBestWeights(patience > 0);
+        evaluator.setAsync(asyncValidation);
+        try {
+            for (int i = 0; i < iterations; i++) {
+
+                trainEpoch(examples, 0, examples.size(), eta, momentum, useWeightDecay);
+                iterationsRun++;
+                evaluator.epochFinished(network, i);
+
+                if (patience > 0 && evaluator.getEvaluations() > 0 && i - evaluator.getBestEpoch() >= patience)
+                    break; //the error has stopped improving
             }
-
-            //use error of validation set to determine ideal iterations
-            currentValidationError = E(validationSet);
-
-            if(currentValidationError < prevValidationError){
-                prevValidationError = currentValidationError;
-//                System.out.println("error = " + prevValidationError +"\n");
-                optimalIterations = i;
-            }
-
+        } finally {
+            evaluator.finish();
         }
 
-    }
-
-
-    public double getAccuracy(ArrayList<Example> examples) {
-        ArrayList<Unit> hiddenLayer = network.getHiddenLayer();
-        ArrayList<Unit> outputLayer = network.getOutputLayer();
-        int n = examples.get(0).getT().length; //determine size of output from first example
+        prevValidationError = evaluator.getBestError();
+        optimalIterations = evaluator.getBestEpoch();
+        if (patience > 0 && evaluator.getBestWeights() != null)
+            network.setWeights(evaluator.getBestWeights());
 
-        double totalCorrect = 0;
-        double numExamples = examples.size();
-        double accuracy;
+    }
 
-        for (Example example : examples) {
-            //Input the instance x to the network
-            network.setX(example.getX()); //propagate the input x through hidden layer
-            network.setT(example.getT());
-            double newX[] = getHiddenOutput(hiddenLayer);
-            double output[] = new double[n - 1]; //number of output units is less than n because of x0
-            String targetStr = "";
-            String outputStr = "";
-
-            //get output from hidden layer and then get final output from network
-            for (Unit k : outputLayer) {
-                int index = outputLayer.indexOf(k);
-                k.setX(newX); //propagate new x through output layer
-                output[index] = k.getOutput();
+    /**
+     * This method creates a new network to train, with its workspace and optimizer
+     */
+    private void createNetwork(int nIn, int hidden[], int nOut){
+        network = new FeedForwardNetwork(nIn, hidden, nOut);
+        network.setActivations(hiddenActivation, outputActivation);
+        workspace = network.newWorkspace();
+        optimizer = optimizerType.create(network);
+        gradients = null;
+    }
 
-            }
+    /**
+     * This method passes once over a range of training examples, updating the weights
+     * after each example or after each mini-batch of batchSize examples
+     * @param examples the list of training examples
+     * @param from the index of the first example
+     * @param to the index after the last example
+     * @param eta the learning rate
+     * @param momentum the momentum used to specify the dependence on the previous weight update
+     * @param useWeightDecay boolean specifying whether to use weight decay
+     */
+    void trainEpoch(List<Example> examples, int from, int to, double eta, double momentum, boolean useWeightDecay){
+        if (batchSize == 1) {
+            for (int e = from; e < to; e++)
+                train(examples.get(e), eta, momentum, useWeightDecay);
+            return;
+        }
 
+        int size = (batchSize <= 0 || batchSize > to - from) ? to - from : batchSize; //full batch
+        for (int start = from; start < to; start += size)
+            trainBatch(examples, start, Math.min(start + size, to), eta, momentum, useWeightDecay);
+    }
 
-            double targetOutput[] = example.getT();
-            for (Double val : output)
-                outputStr += String.format("%.0f", val);
+    /**
+     * This method performs one stochastic update of the network weights for a training example
+     * @param example the training example
+     * @param eta the learning rate
+     * @param momentum the momentum used to specify the dependence on the previous weight update
+     * @param useWeightDecay boolean specifying whether to use weight decay
+     */
+    private void train(Example example, double eta, double momentum, boolean useWeightDecay){
+        double x[] = example.getX();
 
-            for (int i = 1; i < targetOutput.length; i++) {
-                targetStr += String.format("%.0f", targetOutput[i]);
-            }
+        //1.  Input the instance x to the network and propagate it through the layers
+        network.forward(x, workspace);
 
-            if (outputStr.equals(targetStr)) {
-                totalCorrect++;
-//                System.out.println(outputStr +"=" +targetStr +"\n");
-            }
-        }
+        //2. For each output k, compute its error term δk
+        //3. For each hidden unit h,  calculate its error term  δh
+        network.backward(example.getT(), workspace);
 
-        accuracy = (totalCorrect > 0) ? (totalCorrect / numExamples) * 100.0 : 0;
+        //4. Update each network weight wji, from the output layer back to the first hidden layer
+        for (int layer = network.getOutputLayerIndex(); layer >= 0; layer--)
+            updateLayerWeights(layer, x, eta, momentum, useWeightDecay);
+    }
 
-        return accuracy;
+    /**
+     * This method performs one update of the network weights for a mini-batch of examples.
+     * The gradient δj * xji of each weight is accumulated over the batch and the mean gradient
+     * is applied once, so the weights stay fixed while the batch is processed.
+     * @param examples the list of training examples
+     * @param from the index of the first example of the batch
+     * @param to the index after the last example of the batch
+     * @param eta the learning rate
+     * @param momentum the momentum used to specify the dependence on the previous weight update
+     * @param useWeightDecay boolean specifying whether to use weight decay
+     */
+    private void trainBatch(List<Example> examples, int from, int to, double eta, double momentum, boolean useWeightDecay){
+        if (gradients == null) //allocated once per network
+            gradients = newGradients();
+        for (double gradient[] : gradients)
+            Arrays.fill(gradient, 0);
+
+        accumulateGradients(examples, from, to, gradients);
+        applyGradients(gradients, 1.0 / (to - from), eta, momentum, useWeightDecay);
+    }
 
+    /**
+     * This method allocates gradient arrays with the same layout as the weights of the network
+     * @return one array per layer
+     */
+    double[][] newGradients(){
+        double newGradients[][] = new double[network.getNumLayers()][];
+        for (int layer = 0; layer < newGradients.length; layer++)
+            newGradients[layer] = new double[network.getWeights(layer).length];
+        return newGradients;
     }
 
     /**
-     * This method sums the error between the a hidden layer and output unit using the following formula:
-     *   ∑        wkh * δk
-     *   k in outputs
-     * @param layer the output layer
-     * @param k the index of the output unit
-     * @return total error
+     * This method propagates a range of examples through the network and adds
+     * the gradient δj * xji of each example to the gradient of each weight.
+     * The weights are not changed.
+     * @param examples the list of training examples
+     * @param from the index of the first example
+     * @param to the index after the last example
+     * @param gradients the accumulated gradients of each layer
      */
-    public double getErrorSum( ArrayList<Unit> layer, int k){
-        double errorSum = 0;
-        for(Unit outputUnit : layer){
-            double δk = outputUnit.getError();
-            double wkh = outputUnit.getWi(k); //the weight between hidden unit h and output unit k
-            errorSum += (wkh * δk);
+    void accumulateGradients(List<Example> examples, int from, int to, double gradients[][]){
+        int numLayers = network.getNumLayers();
+        for (int e = from; e < to; e++) {
+            double x[] = examples.get(e).getX();
+            network.forward(x, workspace);
+            network.backward(examples.get(e).getT(), workspace);
+            for (int layer = 0; layer < numLayers; layer++)
+                accumulateGradients(layer, network.getLayerInput(layer, x, workspace), gradients[layer]);
         }
+    }
 
-        return errorSum;
+    /**
+     * This method applies accumulated gradients to the weights (output layer first, as in the stochastic version)
+     * @param gradients the accumulated gradients of each layer
+     * @param scale the factor applied to the gradients (1 / number of examples)
+     * @param eta the learning rate
+     * @param momentum the momentum used to specify the dependence on the previous weight update
+     * @param useWeightDecay boolean specifying whether to use weight decay
+     */
+    void applyGradients(double gradients[][], double scale, double eta, double momentum, boolean useWeightDecay){
+        for (int layer = network.getOutputLayerIndex(); layer >= 0; layer--)
+            applyGradients(layer, gradients[layer], scale, eta, momentum, useWeightDecay);
     }
 
     /**
-     * This method determines the output for all hidden units
-     * @param hiddenLayer the hidden layer
-     * @return a vector of outputs from all hidden units
+     * This method adds δj * xji for the last example propagated through the network to the gradient of each weight of a layer
+     * @param layer the index of the layer
+     * @param x the inputs of the layer
+     * @param gradient the accumulated gradients of the layer (same layout as the weights)
      */
-    public double[] getHiddenOutput(ArrayList<Unit> hiddenLayer){
-        int n = hiddenLayer.size();
-        double x[] = new double[n + 1]; //for x0
-        x[0] = 1;
-        for(int i = 1; i <= n; i++)
-            x[i] = hiddenLayer.get(i - 1).getOutput();
-        return x;
+    private void accumulateGradients(int layer, double x[], double gradient[]){
+        double δ[] = workspace.getErrors(layer);
+        int n = network.getFanIn(layer);
+
+        for (int j = 0, offset = 0; j < δ.length; j++, offset += n) {
+            double δj = δ[j];
+            for (int ji = 0; ji < n; ji++)
+                gradient[offset + ji] += δj * x[ji];
+        }
     }
 
     /**
-     * This method updates the weights in the hidden-layer
-     * @param layer the hidden layer
+     * This method updates the weights of a layer from accumulated gradients with the optimizer
+     * @param layer the index of the layer
+     * @param gradient the accumulated gradients of the layer
+     * @param scale the factor applied to the gradients (1 / batch size)
      * @param eta the learning rate
      * @param α the momentum factor
+     * @param useWeightDecay boolean specifying whether to use weight decay
      */
-    public  void updateHiddenWeights(ArrayList<Unit> layer, double eta, double α, boolean useWeightDecay){
-        for (Unit k : layer) {
-            double w[] = k.getW();
-            double x[] = k.getX();
-            double δj =  k.getError();
-
-            for (int ji = 0; ji < w.length; ji++) {
-                double Δwjin = eta * δj * x[ji] + α * prevHiddenDeltaWji; //Δwji(n) = eta * δjxji +  αΔwji(n-1)
-
-                double wji = w[ji] + Δwjin;
-                if(useWeightDecay)
-                    wji -= AnnConstants.WEIGHT_DECAY;
-                k.setWi(wji, ji);
-                prevHiddenDeltaWji = wji;
-            }
+    private void applyGradients(int layer, double gradient[], double scale, double eta, double α, boolean useWeightDecay){
+        double w[] = network.getWeights(layer);
+        optimizer.update(layer, w, gradient, scale, eta, α);
+        if (useWeightDecay)
+            for (int ji = 0; ji < w.length; ji++)
+                w[ji] -= AnnConstants.WEIGHT_DECAY;
+    }
+
+
+    /**
+     * This method computes the percentage of examples classified correctly.
+     * An example is correct if every output, thresholded to an integer, equals its thresholded target.
+     * @param examples the examples to classify
+     * @return the accuracy
+     */
+    public double getAccuracy(List<Example> examples) {
+        double totalCorrect = 0;
+        double numExamples = examples.size();
+        double accuracy;
 
+        for (Example example : examples) {
+            //Input the instance x to the network
+            network.forward(example.getX(), workspace);
+            if (workspace.isCorrect(example.getT()))
+                totalCorrect++;
         }
 
+        accuracy = (totalCorrect > 0) ? (totalCorrect / numExamples) * 100.0 : 0;
+
+        return accuracy;
+
+    }
+
+    /**
+     * This method determines the output for all hidden units
+     * for the last input propagated through the network
+     * @return a vector of outputs from all hidden units (x[0] = 1)
+     */
+    public double[] getHiddenOutput(){
+        return workspace.getOutputs(network.getHiddenLayerIndex());
     }
 
     /**
-     * This method updates the weights in the output-layer.
-     * It is different from the above method in that Δwji(n-1)
-     * in the hidden layer is different from the output layer
-     * @param layer the output layer
+     * This method updates the weights of a layer for the last example propagated through the network:
+     * the gradient δj * xji of each weight is passed to the optimizer
+     * @param layer the index of the layer
+     * @param x the input vector of the network
      * @param eta the learning rate
      * @param α the momentum factor
+     * @param useWeightDecay boolean specifying whether to use weight decay
      */
-    public  void updateOutputWeights(ArrayList<Unit> layer, double eta, double α, boolean useWeightDecay){
-        for (Unit k : layer) {
-            double w[] = k.getW();
-            double x[] = k.getX();
-            double δj =  k.getError();
-
-            for (int ji = 0; ji < w.length; ji++) {
-                double Δwjin = eta * δj * x[ji] + α * prevOutputDeltaWji; //Δwji(n) = eta * δjxji +  αΔwji(n-1)
-                double wji = w[ji] + Δwjin;
-                if(useWeightDecay)
-                    wji -= AnnConstants.WEIGHT_DECAY;
-                k.setWi(wji, ji);
-                prevOutputDeltaWji = wji;
-            }
-
+    public  void updateLayerWeights(int layer, double x[], double eta, double α, boolean useWeightDecay){
+        if (gradients == null) //allocated once per network
+            gradients = newGradients();
+        double gradient[] = gradients[layer];
+        double in[] = network.getLayerInput(layer, x, workspace);
+        double δ[] = workspace.getErrors(layer);
+        int n = network.getFanIn(layer);
+
+        for (int j = 0, offset = 0; j < δ.length; j++, offset += n) {
+            double δj = δ[j];
+            for (int ji = 0; ji < n; ji++)
+                gradient[offset + ji] = δj * in[ji];
         }
-
+        applyGradients(layer, gradient, 1, eta, α, useWeightDecay);
     }
 
 
     /**
      * This is a backup method to update weights in a network layer without using momentum
-     * @param layer the layer to update
+     * @param layer the index of the layer to update
+     * @param x the inputs of the layer
      * @param eta the learning rate
      */
-    public  void updateWeights(ArrayList<Unit> layer, double eta) {
-
-        for (Unit k : layer) {
-            double w[] = k.getW();
-            double x[] = k.getX();
-            double δj =  k.getError();
-
-            for (int ji = 0; ji < w.length; ji++) {
+    public  void updateWeights(int layer, double x[], double eta) {
+        double w[] = network.getWeights(layer);
+        double δ[] = workspace.getErrors(layer);
+        int n = network.getFanIn(layer);
+
+        for (int j = 0, offset = 0; j < δ.length; j++, offset += n) {
+            double δj = δ[j];
+            for (int ji = 0; ji < n; ji++) {
                 double Δwji = eta * δj * x[ji];
-                double wji = w[ji] + Δwji;
-                k.setWi(wji, ji);
+                w[offset + ji] += Δwji;
             }
-
         }
 
     }
@@ -299,30 +399,10 @@ public class Backpropagation {
      * This method computes the error (MSE) on a set of examples.
      * It is mainly used to get the smallest error on the validation set
      * @param examples the examples to use to compute error
-     * @return
+     * @return the mean over the examples of the squared errors of the outputs
      */
-    public double E(ArrayList<Example> examples){
-        ArrayList<Unit> outputLayer = network.getOutputLayer();
-        ArrayList<Unit> hiddenLayer = network.getOutputLayer();
-        double errorSum = 0;
-        double n = examples.size();
-
-        for(Example example : examples) {
-            network.setX(example.getX()); //propagate the input x through hidden layer
-            network.setT(example.getT());
-            double newX[] = getHiddenOutput(hiddenLayer);
-
-            double t[] = example.getT();
-
-            int k = 1;
-            for (Unit o : outputLayer) {
-                o.setX(newX); //propagate new x through output layer
-                double tkd = t[k++];
-                double okd = o.getOutput(); //get the output for this unit
-                errorSum += Math.pow(tkd - okd, 2);
-            }
-        }
-        return (1.0 / n) * errorSum;
+    public double E(List<Example> examples){
+        return ValidationEvaluator.error(network, workspace, examples);
     }
 
 
@@ -330,6 +410,118 @@ public class Backpropagation {
         return network;
     }
 
+    /**
+     * This method sets the number of examples used for each weight update
+     * @param batchSize 1 for stochastic updates (one update per example),
+     *                  n for mini-batches of n examples, or 0 for one full-batch update per iteration
+     */
+    public void setBatchSize(int batchSize){
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize(){
+        return batchSize;
+    }
+
+    /**
+     * This method sets how the weights of the networks created by runBackprop and runKFoldBackprop are updated
+     * @param optimizerType the optimizer (SGD with momentum by default)
+     */
+    public void setOptimizer(OptimizerType optimizerType){
+        this.optimizerType = optimizerType;
+        if (network != null)
+            optimizer = optimizerType.create(network);
+    }
+
+    public OptimizerType getOptimizer(){
+        return optimizerType;
+    }
+
+    /**
+     * This method sets the activation functions of the networks created by runBackprop and runKFoldBackprop
+     * @param hidden the activation function of the hidden units
+     * @param output the activation function of the output units
+     */
+    public void setActivations(Activation hidden, Activation output){
+        this.hiddenActivation = hidden;
+        this.outputActivation = output;
+    }
+
+    public Activation getHiddenActivation(){
+        return hiddenActivation;
+    }
+
+    public Activation getOutputActivation(){
+        return outputActivation;
+    }
+
+    /**
+     * @return the smallest error on the validation set found by runKFoldBackprop
+     */
+    public double getValidationError(){
+        return prevValidationError;
+    }
+
+    /**
+     * This method turns on early stopping in runKFoldBackprop
+     * @param patience the number of iterations without a smaller validation error before training stops
+     *                 (0 to always run all iterations and keep the last weights)
+     */
+    public void setPatience(int patience){
+        this.patience = patience;
+    }
+
+    public int getPatience(){
+        return patience;
+    }
+
+    /**
+     * @return the number of iterations run by the last runKFoldBackprop
+     */
+    public int getIterationsRun(){
+        return iterationsRun;
+    }
+
+    /**
+     * This method sets how the validation error is computed by runKFoldBackprop
+     * @param interval the number of epochs between evaluations (1 = every epoch)
+     * @param sampleSize the size of a stratified subsample of the validation set to evaluate (0 = all examples)
+     * @param async true to evaluate copies of the weights on a separate thread while training continues
+     */
+    public void setValidation(int interval, int sampleSize, boolean async){
+        this.validationInterval = interval;
+        this.validationSampleSize = sampleSize;
+        this.asyncValidation = async;
+    }
+
+    public int getValidationInterval(){
+        return validationInterval;
+    }
+
+    public int getValidationSampleSize(){
+        return validationSampleSize;
+    }
+
+    public boolean isAsyncValidation(){
+        return asyncValidation;
+    }
+
+    /**
+     * This method copies the training settings of another object (batch size, activation functions,
+     * optimizer, early stopping and validation), so several networks can be trained the same way
+     * @param settings the object to copy the settings from
+     */
+    public void copySettings(Backpropagation settings){
+        this.batchSize = settings.batchSize;
+        this.hiddenActivation = settings.hiddenActivation;
+        this.outputActivation = settings.outputActivation;
+        this.optimizerType = settings.optimizerType;
+        this.patience = settings.patience;
+        this.validationInterval = settings.validationInterval;
+        this.validationSampleSize = settings.validationSampleSize;
+        this.asyncValidation = settings.asyncValidation;
+    }
+
     public int getOptimalIterations(){
         return optimalIterations;
     }
@@ -5,6 +5,7 @@ import org.fitz.ml.Attributes;
 import org.fitz.util.Util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * This class facilitates the classification of examples
@@ -22,10 +23,20 @@ public class Classifier {
      * @return the accuracy of the classification
      */
     public double classify(ArrayList<Example> examples, Attributes targetAttributes, Backpropagation bp, boolean isPrintFlagOn, String datasetLabel) {
-        FeedForwardNetwork network = bp.getNetwork();
-        ArrayList<Unit> hiddenLayer = network.getHiddenLayer();
-        ArrayList<Unit> outputLayer = network.getOutputLayer();
-        int n = examples.get(0).getT().length; //determine size of output from first example
+        return classify(examples, targetAttributes, bp.getNetwork(), isPrintFlagOn, datasetLabel);
+    }
+
+    /**
+     * This method classifies examples with a trained network (for example one loaded from a model file)
+     * @param examples the examples to classify
+     * @param targetAttributes the target classes
+     * @param network the trained network
+     * @param isPrintFlagOn flag to specify printing of classifications
+     * @return the accuracy of the classification
+     */
+    public double classify(ArrayList<Example> examples, Attributes targetAttributes, FeedForwardNetwork network, boolean isPrintFlagOn, String datasetLabel) {
+        Workspace workspace = network.newWorkspace();
+        int hiddenLayer = network.getHiddenLayerIndex();
 
         if (isPrintFlagOn)
             printHeader(datasetLabel);
@@ -35,38 +46,21 @@ public class Classifier {
         double numExamples = examples.size();
 
         for (Example example : examples) {
-            //Input the instance x to the network
-            network.setX(example.getX()); //propagate the input x through hidden layer
-            network.setT(example.getT());
-            double newX[] = bp.getHiddenOutput(hiddenLayer);
-            double output[] = new double[n - 1]; //number of output units is less than n because of x0
-            String targetStr = "";
-            String outputStr = "";
-
-            //get output from hidden layer and then get final output from network
-            for (Unit k : outputLayer) {
-                int index = outputLayer.indexOf(k);
-                k.setX(newX); //propagate new x through output layer
-                output[index] = k.getOutput();
-
-            }
-
-            double targetOutput[] = example.getT();
-            for (Double val : output)
-                outputStr += String.format("%.0f", val);
-
-            for (int i = 1; i < targetOutput.length; i++) {
-                targetStr += String.format("%.0f", targetOutput[i]);
-            }
+            //Input the instance x to the network and get the final output from the network
+            double networkOutput[] = network.forward(example.getX(), workspace); //networkOutput[0] is x0
 
-            if (outputStr.equals(targetStr)) {
+            if (workspace.isCorrect(example.getT())) {
                 totalCorrect++;
-//                System.out.println(outputStr +"=" +targetStr +"\n");
             }
 
             //only print classifications if print flag turned on
             if (isPrintFlagOn) {
+                double newX[] = workspace.getOutputs(hiddenLayer);
+                double output[] = Arrays.copyOfRange(networkOutput, 1, networkOutput.length);
                 if (example.instanceSaved()) {
+                    String outputStr = "";
+                    for (double val : output)
+                        outputStr += Workspace.threshold(val);
                     Attribute targetAttribute = targetAttributes.get(0);//only one attribute exist when instance saved
                     printResult(example.getX(), example.toString(), newX, output, Util.revertOneOfN(targetAttribute, outputStr), example.getTargetOutput());
                 } else
@@ -0,0 +1,481 @@
+package org.fitz.ml.backprop;
+
+import org.fitz.ml.Attribute;
+import org.fitz.ml.AttributeType;
+import org.fitz.ml.Attributes;
+import org.fitz.ml.constants.AnnConstants;
+import org.fitz.ml.data.MappedDataFile;
+import org.fitz.util.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class encodes the lines of a dataset into vectors <x, t>.
+ * The 1-of-n code of every value of a non-numeric attribute is computed once, when the encoder is created,
+ * so encoding a value is a table lookup. A dataset is encoded into one contiguous matrix with a row per
+ * example (x followed by t), which can be saved to a binary cache file and loaded back without parsing the text.
+ * The cache file (little-endian) holds
+ *   int     magic ("FEAC")
+ *   int     version
+ *   int     size of x, int size of t, int number of rows
+ *   int     hash of the attributes the rows were encoded with
+ *   long    length and long last-modified time of the dataset file
+ *   rows x (size of x + size of t) doubles
+ * A cache file whose attributes or dataset file have changed is ignored.
+ */
+public class ExampleEncoder {
+    public static final int CACHE_MAGIC = 0x43414546; //"FEAC" in little-endian byte order
+    public static final int CACHE_VERSION = 1;
+    private static final int CACHE_HEADER_SIZE = 40;
+    private static final long MIN_SPLIT = 1 << 20; //bytes of a file encoded by each thread at least
+    private static final int SAMPLE_ROWS = 64;     //rows used to estimate the number of rows of a file
+
+    private CodeTable inputTables[];
+    private CodeTable targetTables[];
+    private boolean isNumericTarget; //examples of numeric targets have no target output string
+    private int nIn;  //size of x (including x0)
+    private int nOut; //size of t (including t0)
+    private int attributesHash;
+
+    /**
+     * @param inputAttributes the input attributes
+     * @param targetAttributes the target attributes
+     */
+    public ExampleEncoder(Attributes inputAttributes, Attributes targetAttributes){
+        StringBuilder layout = new StringBuilder();
+        inputTables = createTables(inputAttributes, 0, 1, layout);
+        targetTables = createTables(targetAttributes, AnnConstants.CLOSE_TO_0, AnnConstants.CLOSE_TO_ONE, layout);
+        nIn = getVectorSize(inputTables);
+        nOut = getVectorSize(targetTables);
+        attributesHash = layout.toString().hashCode();
+        for (CodeTable table : targetTables)
+            if (table.codes == null)
+                isNumericTarget = true;
+    }
+
+    /**
+     * This method builds the code table of each attribute
+     * @param zero the value of a 0 in the codes (0 for inputs, CLOSE_TO_0 for targets)
+     * @param one the value of a 1 in the codes
+     * @param layout receives a description of the attributes (used to recognize stale cache files)
+     */
+    private static CodeTable[] createTables(Attributes attributes, double zero, double one, StringBuilder layout){
+        ArrayList<Attribute> list = attributes.getAttributes();
+        CodeTable tables[] = new CodeTable[list.size()];
+        int offset = 1; //skip x0 or t0
+        for (int a = 0; a < tables.length; a++) {
+            Attribute attribute = list.get(a);
+            tables[a] = new CodeTable(attribute, offset, zero, one);
+            offset += tables[a].width;
+            layout.append(attribute.getName()).append(attribute.getType()).append(Arrays.toString(attribute.getValues()));
+        }
+        layout.append('|').append(zero).append(',').append(one).append('|');
+        return tables;
+    }
+
+    private static int getVectorSize(CodeTable tables[]){
+        int n = 1;
+        for (CodeTable table : tables)
+            n += table.width;
+        return n;
+    }
+
+    /**
+     * This method encodes one line of a dataset into a row of a matrix
+     * @param vals the values of the line (the inputs followed by the targets)
+     * @param data the matrix
+     * @param row the index of the row
+     */
+    public void encode(String vals[], double data[], int row){
+        int base = row * getRowSize();
+        data[base] = 1; //x0
+        encode(vals, 0, inputTables, data, base);
+        data[base + nIn] = 1; //t0
+        encode(vals, inputTables.length, targetTables, data, base + nIn);
+    }
+
+    /**
+     * This method encodes one line of a dataset into the vectors of an example
+     * @param vals the values of the line (the inputs followed by the targets)
+     * @param example the example (its x and t vectors are overwritten)
+     */
+    public void encode(String vals[], Example example){
+        double x[] = example.getX();
+        double t[] = example.getT();
+        Arrays.fill(x, 0);
+        Arrays.fill(t, 0);
+        x[0] = 1; //x0
+        encode(vals, 0, inputTables, x, 0);
+        t[0] = 1; //t0
+        encode(vals, inputTables.length, targetTables, t, 0);
+    }
+
+    /**
+     * This method checks if a line of a dataset has a value for every input attribute
+     * @param vals the values of the line
+     * @return true if the line can be encoded
+     */
+    public boolean isComplete(String vals[]){
+        return vals.length >= inputTables.length;
+    }
+
+    private static void encode(String vals[], int from, CodeTable tables[], double data[], int base){
+        for (int a = 0; a < tables.length && from + a < vals.length; a++) {
+            CodeTable table = tables[a];
+            if (table.codes == null) {
+                try {
+                    data[base + table.offset] = Double.parseDouble(vals[from + a]);
+                } catch (NumberFormatException e) {
+                    //a value that is not a number is left as zero
+                }
+            }
+            else {
+                Integer index = table.indexes.get(vals[from + a]);
+                if (index != null) //an unknown value is left as zeros
+                    System.arraycopy(table.codes[index], 0, data, base + table.offset, table.width);
+            }
+        }
+    }
+
+    /**
+     * This method encodes a dataset file on as many threads as there are processors
+     * @see #encodeFile(String, int)
+     */
+    public double[] encodeFile(String filename) throws IOException {
+        return encodeFile(filename, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * This method encodes a dataset file. The file is memory-mapped and split at line boundaries into
+     * one range per thread; each thread encodes the rows of its range straight from the mapped bytes
+     * and the matrices of the ranges are joined in the order of the file.
+     * @param filename the dataset file
+     * @param threads the number of threads (files smaller than MIN_SPLIT bytes per thread use fewer)
+     * @return the matrix of the examples (one row of x followed by t per example)
+     * @throws IOException if the file cannot be read
+     */
+    public double[] encodeFile(String filename, int threads) throws IOException {
+        MappedDataFile file = new MappedDataFile(filename);
+        try {
+            int parts = (int) Math.max(1, Math.min(threads, file.size() / MIN_SPLIT));
+            long bounds[] = file.split(parts);
+            RangeTask tasks[] = new RangeTask[bounds.length - 1];
+            for (int p = 0; p < tasks.length; p++)
+                tasks[p] = new RangeTask(this, file, bounds[p], bounds[p + 1]);
+
+            if (tasks.length == 1)
+                tasks[0].compute();
+            else {
+                ForkJoinPool pool = new ForkJoinPool(Math.min(threads, tasks.length));
+                try {
+                    for (RangeTask task : tasks)
+                        pool.execute(task);
+                    for (RangeTask task : tasks)
+                        task.join();
+                } finally {
+                    pool.shutdown();
+                }
+            }
+
+            int length = 0;
+            for (RangeTask task : tasks) {
+                if (task.error != null)
+                    throw task.error;
+                length += task.length;
+            }
+            if (tasks.length == 1)
+                return Arrays.copyOf(tasks[0].data, length);
+            double data[] = new double[length];
+            int position = 0;
+            for (RangeTask task : tasks) {
+                System.arraycopy(task.data, 0, data, position, task.length);
+                position += task.length;
+            }
+            return data;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * This method encodes the rows of a mapped range of a dataset file into a matrix
+     * @param rows the rows
+     * @param data the matrix (replaced by a larger one when it is full)
+     * @param count the number of rows in the matrix (count[0]), updated
+     * @return the matrix
+     */
+    private double[] encode(MappedDataFile.Rows rows, double data[], int count[]){
+        int rowSize = getRowSize();
+        while (rows.next()) {
+            if (rows.size() < inputTables.length)
+                continue;
+            if (count[0] == SAMPLE_ROWS) { //size the matrix for the rest of the range from the length of the first rows
+                long expected = (long) rows.length() * SAMPLE_ROWS / rows.position() * 17 / 16;
+                if (expected * rowSize > data.length)
+                    data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE - 8, expected * rowSize));
+            }
+            if ((count[0] + 1) * rowSize > data.length)
+                data = Arrays.copyOf(data, data.length * 2);
+            int base = count[0]++ * rowSize;
+            data[base] = 1; //x0
+            encode(rows, 0, inputTables, data, base);
+            data[base + nIn] = 1; //t0
+            encode(rows, inputTables.length, targetTables, data, base + nIn);
+        }
+        return data;
+    }
+
+    private static void encode(MappedDataFile.Rows rows, int from, CodeTable tables[], double data[], int base){
+        for (int a = 0; a < tables.length && from + a < rows.size(); a++) {
+            CodeTable table = tables[a];
+            if (table.codes == null) {
+                try {
+                    data[base + table.offset] = rows.getDouble(from + a);
+                } catch (NumberFormatException e) {
+                    //a value that is not a number is left as zero
+                }
+            }
+            else {
+                int index = table.indexOf(rows, from + a);
+                if (index >= 0) //an unknown value is left as zeros
+                    System.arraycopy(table.codes[index], 0, data, base + table.offset, table.width);
+            }
+        }
+    }
+
+    /**
+     * This method creates the examples of a matrix. Their vectors are copied from the rows.
+     * @param data the matrix
+     * @param keepInstances true to store the attribute values (and the target output) in the examples,
+     *                      decoded from the codes, e.g. to print the classifications
+     * @return the examples
+     */
+    public ArrayList<Example> toExamples(double data[], boolean keepInstances){
+        int rowSize = getRowSize();
+        int rows = data.length / rowSize;
+        ArrayList<Example> examples = new ArrayList<Example>(rows);
+        for (int row = 0; row < rows; row++) {
+            int base = row * rowSize;
+            Example example;
+            if (!keepInstances)
+                example = new Example(nIn, nOut);
+            else {
+                ArrayList<String> instance = new ArrayList<String>(inputTables.length);
+                for (CodeTable table : inputTables)
+                    instance.add(table.decode(data, base));
+                if (isNumericTarget || targetTables.length == 0)
+                    example = new Example(nIn, nOut, instance);
+                else
+                    example = new Example(nIn, nOut, instance, targetTables[0].decode(data, base + nIn));
+            }
+            System.arraycopy(data, base, example.getX(), 0, nIn);
+            System.arraycopy(data, base + nIn, example.getT(), 0, nOut);
+            examples.add(example);
+        }
+        return examples;
+    }
+
+    /**
+     * This method saves an encoded dataset to a cache file
+     * @param data the matrix of the examples
+     * @param cacheFile the cache file (overwritten if it exists)
+     * @param sourceFile the dataset file the matrix was encoded from
+     * @throws IOException if the file cannot be written
+     */
+    public void saveCache(double data[], String cacheFile, String sourceFile) throws IOException {
+        File source = new File(sourceFile);
+        ByteBuffer buffer = ByteBuffer.allocate(CACHE_HEADER_SIZE + 8 * data.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(CACHE_MAGIC).putInt(CACHE_VERSION).putInt(nIn).putInt(nOut).putInt(data.length / getRowSize())
+                .putInt(attributesHash).putLong(source.length()).putLong(source.lastModified());
+        buffer.asDoubleBuffer().put(data);
+        buffer.rewind();
+
+        RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            channel.truncate(0);
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * This method loads an encoded dataset saved by saveCache
+     * @param cacheFile the cache file
+     * @param sourceFile the dataset file the cache was created from
+     * @return the matrix of the examples, or null if there is no cache file or it is out of date
+     * @throws IOException if the file cannot be read
+     */
+    public double[] loadCache(String cacheFile, String sourceFile) throws IOException {
+        File source = new File(sourceFile);
+        if (!new File(cacheFile).isFile())
+            return null;
+
+        RandomAccessFile file = new RandomAccessFile(cacheFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if (size < CACHE_HEADER_SIZE)
+                return null;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getInt() != CACHE_MAGIC || buffer.getInt() != CACHE_VERSION || buffer.getInt() != nIn || buffer.getInt() != nOut)
+                return null;
+            int rows = buffer.getInt();
+            if (buffer.getInt() != attributesHash || buffer.getLong() != source.length() || buffer.getLong() != source.lastModified())
+                return null;
+            if (rows < 0 || size != CACHE_HEADER_SIZE + 8L * rows * getRowSize())
+                return null;
+
+            double data[] = new double[rows * getRowSize()];
+            buffer.asDoubleBuffer().get(data);
+            return data;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * @return the number of values in a row of the matrix (size of x + size of t)
+     */
+    public int getRowSize(){
+        return nIn + nOut;
+    }
+
+    public int getXSize(){
+        return nIn;
+    }
+
+    public int getTSize(){
+        return nOut;
+    }
+
+    /**
+     * This class encodes a range of a mapped dataset file (one per thread)
+     */
+    private static class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private ExampleEncoder encoder;
+        private MappedDataFile file;
+        private long from;
+        private long to;
+        private double data[];
+        private int length = 0;
+        private IOException error;
+
+        RangeTask(ExampleEncoder encoder, MappedDataFile file, long from, long to){
+            this.encoder = encoder;
+            this.file = file;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            int rowSize = encoder.getRowSize();
+            int count[] = new int[1];
+            try {
+                data = encoder.encode(file.rows(from, to), new double[(SAMPLE_ROWS + 1) * rowSize], count);
+            } catch (IOException e) {
+                error = e;
+            }
+            length = count[0] * rowSize;
+        }
+    }
+
+    /**
+     * This class holds the codes of the values of one attribute
+     */
+    private static class CodeTable {
+        private int offset; //position of the first value of the attribute in the vector
+        private int width;  //number of values the attribute takes up in the vector
+        private String values[];
+        private double codes[][]; //codes[i] = 1-of-n code of values[i] (null if the attribute is numeric)
+        private HashMap<String, Integer> indexes;
+        private byte valueBytes[][]; //values as they are stored in a dataset file
+        private int slots[];         //open addressing table of the byte hashes: index of a value + 1 (0 = empty)
+
+        CodeTable(Attribute attribute, int offset, double zero, double one){
+            this.offset = offset;
+            this.values = attribute.getValues();
+            if (attribute.getType() == AttributeType.NUMERIC) { //a numeric value takes up one slot
+                width = 1;
+                return;
+            }
+            width = values.length;
+            codes = new double[values.length][width];
+            indexes = new HashMap<String, Integer>();
+            for (int i = 0; i < values.length; i++) {
+                String code = Util.oneOfN(i + 1, width);
+                for (int j = 0; j < width; j++)
+                    codes[i][j] = (code.charAt(j) == '1') ? one : zero;
+                if (!indexes.containsKey(values[i]))
+                    indexes.put(values[i], i);
+            }
+
+            valueBytes = new byte[values.length][];
+            slots = new int[Integer.highestOneBit(Math.max(1, values.length)) * 4];
+            for (int i = 0; i < values.length; i++) {
+                valueBytes[i] = MappedDataFile.getBytes(values[i]);
+                if (indexes.get(values[i]) == i) //the first of equal values, as in indexes
+                    slots[findSlot(MappedDataFile.hash(valueBytes[i]), valueBytes[i])] = i + 1;
+            }
+        }
+
+        private int findSlot(int hash, byte value[]){
+            int mask = slots.length - 1;
+            int slot = hash & mask;
+            while (slots[slot] != 0 && !Arrays.equals(valueBytes[slots[slot] - 1], value))
+                slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        /**
+         * This method finds the index of a value of a row of a mapped file without creating a String
+         * @param rows the rows (positioned on the row)
+         * @param field the index of the value in the row
+         * @return the index of the value in the attribute values, -1 if unknown
+         */
+        int indexOf(MappedDataFile.Rows rows, int field){
+            int mask = slots.length - 1;
+            for (int slot = rows.hash(field) & mask; slots[slot] != 0; slot = (slot + 1) & mask)
+                if (rows.equals(field, valueBytes[slots[slot] - 1]))
+                    return slots[slot] - 1;
+            return -1;
+        }
+
+        /**
+         * This method finds the value of the attribute in a row of the matrix
+         * @param data the matrix
+         * @param base the position of the first value of the vector in the matrix
+         * @return the value ("" if the code is not the code of a value)
+         */
+        String decode(double data[], int base){
+            if (codes == null)
+                return String.valueOf(data[base + offset]);
+            for (int i = 0; i < codes.length; i++) {
+                int j = 0;
+                while (j < width && codes[i][j] == data[base + offset + j])
+                    j++;
+                if (j == width)
+                    return values[i];
+            }
+            return "";
+        }
+    }
+}
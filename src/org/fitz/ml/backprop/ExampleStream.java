@@ -0,0 +1,182 @@
+package org.fitz.ml.backprop;
+
+import org.fitz.ml.data.DatasetReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class streams the examples of a dataset file in chunks of a fixed number of examples,
+ * so a training file does not have to fit in memory.
+ * Each pass over the file (see open) reads and encodes the file on a separate thread while the
+ * previous chunk is being used, so parsing overlaps training. Only CHUNKS chunks exist: a chunk is
+ * reused once the next one is requested, which bounds the memory to CHUNKS * chunkSize examples.
+ */
+public class ExampleStream {
+    private static final int CHUNKS = 3; //the chunk being used, the chunk being filled and one ready chunk
+
+    private String filename;
+    private ExampleEncoder encoder;
+    private int chunkSize;
+
+    private Chunk chunks[];             //allocated by the first pass and reused by the next passes
+    private BlockingQueue<Chunk> free;  //chunks waiting to be filled
+    private BlockingQueue<Chunk> ready; //filled chunks, in the order of the file
+    private Chunk current;              //the chunk returned by the last call to nextChunk
+    private Thread reader;
+    private volatile boolean closed;
+    private long examplesRead = 0;
+
+    /**
+     * @param filename the dataset file
+     * @param encoder the encoder of the attributes of the dataset
+     * @param chunkSize the number of examples per chunk
+     */
+    public ExampleStream(String filename, ExampleEncoder encoder, int chunkSize){
+        this.filename = filename;
+        this.encoder = encoder;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * This method starts a new pass over the file (ending the current pass if it has not finished)
+     */
+    public void open(){
+        close();
+        closed = false;
+        free = new ArrayBlockingQueue<Chunk>(CHUNKS);
+        ready = new ArrayBlockingQueue<Chunk>(CHUNKS + 1); //room for the end of the file after the chunks
+        if (chunks == null) {
+            chunks = new Chunk[CHUNKS];
+            for (int c = 0; c < CHUNKS; c++)
+                chunks[c] = new Chunk(chunkSize, encoder.getXSize(), encoder.getTSize());
+        }
+        for (Chunk chunk : chunks)
+            free.add(chunk);
+        current = null;
+
+        reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                read();
+            }
+        }, "example-stream");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * This method reads the file into the free chunks, runs on the reader thread
+     */
+    private void read(){
+        DatasetReader rows = null;
+        try {
+            rows = new DatasetReader(filename);
+            String vals[] = rows.nextRow();
+            while (vals != null && !closed) {
+                Chunk chunk = free.take();
+                chunk.size = 0;
+                for (; vals != null && chunk.size < chunkSize; vals = rows.nextRow())
+                    if (encoder.isComplete(vals))
+                        encoder.encode(vals, chunk.examples.get(chunk.size++));
+                ready.put(chunk);
+            }
+            ready.put(Chunk.END);
+        } catch (IOException e) {
+            ready.offer(Chunk.failed(e));
+        } catch (InterruptedException e) { //the pass was closed
+        } finally {
+            if (rows != null)
+                try {
+                    rows.close();
+                } catch (IOException e) {
+                    System.out.println(e.getMessage());
+                }
+        }
+    }
+
+    /**
+     * This method returns the next chunk of the current pass. The examples of the previous chunk
+     * are overwritten from then on, so they must not be kept.
+     * @return the examples of the chunk, or null at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    public List<Example> nextChunk() throws IOException {
+        if (ready == null)
+            open();
+        if (current != null) {
+            free.offer(current);
+            current = null;
+        }
+
+        Chunk chunk;
+        try {
+            chunk = ready.take();
+        } catch (InterruptedException e) {
+            throw new IOException("interrupted while reading " + filename, e);
+        }
+        if (chunk.error != null)
+            throw chunk.error;
+        if (chunk == Chunk.END) {
+            ready.offer(Chunk.END); //later calls also return null
+            return null;
+        }
+        current = chunk;
+        examplesRead += chunk.size;
+        return chunk.examples.subList(0, chunk.size);
+    }
+
+    /**
+     * This method ends the current pass and stops the reader thread
+     */
+    public void close(){
+        closed = true;
+        if (reader != null) {
+            reader.interrupt();
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            reader = null;
+        }
+        ready = null;
+    }
+
+    /**
+     * @return the number of examples returned by nextChunk over all passes
+     */
+    public long getExamplesRead(){
+        return examplesRead;
+    }
+
+    public int getChunkSize(){
+        return chunkSize;
+    }
+
+    /**
+     * This class holds the examples of a chunk; the examples are allocated once and overwritten every time the chunk is filled
+     */
+    private static class Chunk {
+        private static final Chunk END = new Chunk(0, 0, 0); //marks the end of the file
+
+        private ArrayList<Example> examples;
+        private int size = 0;
+        private IOException error;
+
+        Chunk(int chunkSize, int nIn, int nOut){
+            examples = new ArrayList<Example>(chunkSize);
+            for (int e = 0; e < chunkSize; e++)
+                examples.add(new Example(nIn, nOut));
+        }
+
+        static Chunk failed(IOException error){
+            Chunk chunk = new Chunk(0, 0, 0);
+            chunk.error = error;
+            return chunk;
+        }
+    }
+}
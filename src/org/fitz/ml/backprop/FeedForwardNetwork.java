@@ -1,59 +1,274 @@
 package org.fitz.ml.backprop;
 
-import java.util.ArrayList;
+import org.fitz.ml.constants.AnnConstants;
+
+import java.util.Arrays;
+import java.util.Random;
 
 /**
  * This class facilitates the creation and manipulation
- * of a feed-forward network
+ * of a feed-forward network with any number of hidden layers.
+ * The weights of each layer are stored in a single row-major array:
+ * the weight between input i (i = 0 for x0) and unit j of a layer is weights[layer][j * fanIn + i].
+ * The network only holds the weights: the outputs and error terms of a pass are kept in a Workspace,
+ * so several threads can propagate examples through the same weights, each with its own workspace.
+ * Each layer has its own activation function (the sigmoid by default).
  * Created by FitzRoi on 3/3/16.
  */
 public class FeedForwardNetwork {
 
-    private ArrayList<Unit> outputLayer;
-    private ArrayList<Unit> hiddenLayer;
+    private int fanIn[];        //number of inputs of each unit in a layer (including x0)
+    private int numUnits[];     //number of units in each layer
+    private double weights[][]; //row-major weights of each layer
+    private Activation activations[]; //activation function of each layer
 
     public FeedForwardNetwork(int nIn, int nHidden, int nOut){
-        this.hiddenLayer = new ArrayList<Unit>();
-        this.outputLayer = new ArrayList<Unit>();
-        init(nIn, nHidden, nOut);
+        init(nIn, new int[]{nHidden}, nOut);
     }
 
-    public ArrayList<Unit> getOutputLayer() {
-        return outputLayer;
+    public FeedForwardNetwork(int nIn, int hidden[], int nOut){
+        init(nIn, hidden, nOut);
     }
 
-    public ArrayList<Unit> getHiddenLayer() {
-        return hiddenLayer;
+    /**
+     * This constructor copies a network (layout, weights and activation functions)
+     * @param network the network to copy
+     */
+    public FeedForwardNetwork(FeedForwardNetwork network){
+        fanIn = network.fanIn.clone();
+        numUnits = network.numUnits.clone();
+        activations = network.activations.clone();
+        weights = new double[network.weights.length][];
+        for (int layer = 0; layer < weights.length; layer++)
+            weights[layer] = network.weights[layer].clone();
     }
 
     /**
-     * This method initializes the network units and weights
+     * This method initializes a network with one hidden layer
      * @param nIn the number of inputs
      * @param nHidden the number of hidden units
      * @param nOut the number of output units
      */
     public void init(int nIn, int nHidden, int nOut){
-        for(int i = 0 ; i < nHidden; i++) { //make nHidden hidden units
-            Unit h = new Unit(nIn, nOut); //xSize, targetSize
-            h.initWeights();
-            hiddenLayer.add(h);
+        init(nIn, new int[]{nHidden}, nOut);
+    }
+
+    /**
+     * This method initializes the network layers and weights
+     * @param nIn the number of inputs (including x0)
+     * @param hidden the number of units in each hidden layer, from the input side
+     * @param nOut the number of output units
+     */
+    public void init(int nIn, int hidden[], int nOut){
+        numUnits = new int[hidden.length + 1];
+        fanIn = new int[numUnits.length];
+        for (int layer = 0; layer < numUnits.length; layer++) {
+            numUnits[layer] = (layer < hidden.length) ? hidden[layer] : nOut;
+            fanIn[layer] = (layer == 0) ? nIn : numUnits[layer - 1] + 1; //+1 for x0
+        }
+        weights = new double[numUnits.length][];
+        activations = new Activation[numUnits.length];
+        Arrays.fill(activations, Activation.SIGMOID);
+
+        for (int layer = 0; layer < numUnits.length; layer++)
+            weights[layer] = new double[numUnits[layer] * fanIn[layer]];
+        initWeights();
+    }
+
+    /**
+     * This method initializes random weights to start off the training process
+     */
+    public void initWeights(){
+        Random rand = new Random();
+        for (double w[] : weights)
+            for (int i = 0; i < w.length; i++)
+                w[i] = AnnConstants.MIN_WEIGHT + (AnnConstants.MAX_WEIGHT - AnnConstants.MIN_WEIGHT) * rand.nextDouble();
+    }
+
+    /**
+     * This method allocates the buffers needed to propagate examples through the network
+     * @return a new workspace
+     */
+    public Workspace newWorkspace(){
+        return new Workspace(numUnits);
+    }
+
+    /**
+     * This method propagates an input vector through the network
+     * @param x the input vector (x[0] = 1)
+     * @param workspace the buffers that receive the output of each layer
+     * @return the outputs of the output layer (index 0 holds x0, the output of unit k is at index k + 1)
+     */
+    public double[] forward(double x[], Workspace workspace){
+        double in[] = x;
+        for (int layer = 0; layer < numUnits.length; layer++) {
+            double w[] = weights[layer];
+            double out[] = workspace.getOutputs(layer);
+            int n = fanIn[layer];
+            for (int j = 0, offset = 0; j < numUnits[layer]; j++, offset += n) {
+                double net = 0;
+                for (int i = 0; i < n; i++)
+                    net += (w[offset + i] * in[i]);
+                out[j + 1] = net;
+            }
+            activations[layer].apply(out, 1, out.length);
+            in = out;
+        }
+        return in;
+    }
+
+    /**
+     * This method computes the error term of every unit for the outputs of the last forward pass:
+     *   δk = f'(ok)(tk - ok) for an output unit k
+     *   δh = f'(oh) * ∑ wkh * δk for a hidden unit h (k in the next layer)
+     * where f' is the derivative of the activation function of the layer, computed from the cached output
+     * (for the sigmoid f'(o) = o(1 - o)).
+     * The sums are accumulated row by row of the next layer's weights, so the weights are read in storage order.
+     * @param t the target vector (t[0] is unused)
+     * @param workspace the buffers of the last forward pass, which receive the error terms
+     */
+    public void backward(double t[], Workspace workspace){
+        int last = numUnits.length - 1;
+        double out[] = workspace.getOutputs(last);
+        double δ[] = workspace.getErrors(last);
+        for (int k = 0; k < numUnits[last]; k++)
+            δ[k] = t[k + 1] - out[k + 1];
+        activations[last].multiplyByDerivative(out, δ);
+
+        for (int layer = last - 1; layer >= 0; layer--) {
+            double nextW[] = weights[layer + 1];
+            double nextδ[] = workspace.getErrors(layer + 1);
+            int nextFanIn = fanIn[layer + 1];
+            out = workspace.getOutputs(layer);
+            δ = workspace.getErrors(layer);
+            Arrays.fill(δ, 0);
+            for (int k = 0, offset = 1; k < nextδ.length; k++, offset += nextFanIn) { //offset skips w0
+                double δk = nextδ[k];
+                for (int h = 0; h < δ.length; h++)
+                    δ[h] += (nextW[offset + h] * δk);
+            }
+            activations[layer].multiplyByDerivative(out, δ);
+        }
+    }
+
+    /**
+     * This is the sigmoid or logistic function, which outputs a value between 0 and 1
+     * @param net the value for which the sigmoid must be calculated
+     * @return the sigmoid value
+     */
+    public static double σ(double net){
+        double divisor = (1 + Math.exp(-net));
+        if(divisor == 0)
+            return 0;
+        return (1 / divisor); //σ(y) = 1 / (1 + e^(-y))
+    }
+
+    /**
+     * This method returns the inputs of a layer for the last forward pass
+     * @param layer the layer
+     * @param x the input vector of the network
+     * @param workspace the buffers of the last forward pass
+     * @return x for the first layer, otherwise the outputs of the previous layer
+     */
+    public double[] getLayerInput(int layer, double x[], Workspace workspace){
+        return (layer == 0) ? x : workspace.getOutputs(layer - 1);
+    }
+
+    public int getNumLayers(){
+        return numUnits.length;
+    }
+
+    public int getNumUnits(int layer){
+        return numUnits[layer];
+    }
+
+    public int getFanIn(int layer){
+        return fanIn[layer];
+    }
+
+    public double[] getWeights(int layer){
+        return weights[layer];
+    }
+
+    /**
+     * @return the number of weights of all layers
+     */
+    public int getNumWeights(){
+        int numWeights = 0;
+        for (double w[] : weights)
+            numWeights += w.length;
+        return numWeights;
+    }
+
+    /**
+     * This method copies the weights of all layers, one layer after the other, into a flat array
+     * @param dest the array to copy into (reused if it has getNumWeights() elements, otherwise a new array is allocated)
+     * @return the array holding the copy
+     */
+    public double[] copyWeights(double dest[]){
+        if (dest == null || dest.length != getNumWeights())
+            dest = new double[getNumWeights()];
+        int position = 0;
+        for (double w[] : weights) {
+            System.arraycopy(w, 0, dest, position, w.length);
+            position += w.length;
         }
-        for(int i = 0; i < nOut; i++) { //make nOut output units
-            int xSize = nHidden + 1; //+1 for x0
-            Unit o = new Unit(xSize, nOut);
-            o.initWeights();
-            outputLayer.add(o);
+        return dest;
+    }
+
+    /**
+     * This method restores the weights of all layers from a flat copy made by copyWeights
+     * @param src the copy of the weights
+     */
+    public void setWeights(double src[]){
+        int position = 0;
+        for (double w[] : weights) {
+            System.arraycopy(src, position, w, 0, w.length);
+            position += w.length;
         }
+    }
+
+    /**
+     * This method sets the activation function of a layer
+     * @param layer the index of the layer
+     * @param activation the activation function
+     */
+    public void setActivation(int layer, Activation activation){
+        activations[layer] = activation;
+    }
+
+    /**
+     * This method sets the activation function of all hidden layers and of the output layer
+     * @param hidden the activation function of the hidden units
+     * @param output the activation function of the output units
+     */
+    public void setActivations(Activation hidden, Activation output){
+        int last = numUnits.length - 1;
+        for (int layer = 0; layer < last; layer++)
+            activations[layer] = hidden;
+        activations[last] = output;
+    }
 
+    public Activation getActivation(int layer){
+        return activations[layer];
     }
 
-    public void setX(double[] x) {
-        for(Unit unit : hiddenLayer)
-            unit.setX(x);
+    /**
+     * This method returns the number of units in each layer
+     * @return the sizes of the hidden layers followed by the number of outputs
+     */
+    public int[] getLayerSizes(){
+        return numUnits.clone();
+    }
+
+    /**
+     * @return the index of the first hidden layer (the output layer if there are no hidden layers)
+     */
+    public int getHiddenLayerIndex(){
+        return 0;
     }
 
-    public void setT(double[] t){
-        for(Unit unit : outputLayer)
-            unit.setT(t);
+    public int getOutputLayerIndex(){
+        return numUnits.length - 1;
     }
 }
@@ -0,0 +1,122 @@
+package org.fitz.ml.backprop;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * This class saves trained networks to a compact binary file and loads them back.
+ * All values are little-endian:
+ *   int     magic ("FANN")
+ *   int     version
+ *   int     number of layers L
+ *   int     number of inputs of the first layer (including x0)
+ *   L times int number of units, int activation function (Activation ordinal)
+ *   padding to a multiple of 8 bytes
+ *   L blocks of doubles: the row-major weights of each layer (weights[layer][j * fanIn + i])
+ * Files are loaded through a read-only memory-mapped FileChannel, so the weight blocks are copied
+ * into the network with bulk reads straight from the page cache, which all processes loading
+ * the same file share.
+ */
+public class ModelFile {
+    public static final int MAGIC = 0x4E4E4146; //"FANN" in little-endian byte order
+    public static final int VERSION = 1;
+
+    private ModelFile(){}
+
+    /**
+     * This method saves a network
+     * @param network the network to save
+     * @param filename the name of the model file (overwritten if it exists)
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(FeedForwardNetwork network, String filename) throws IOException {
+        int numLayers = network.getNumLayers();
+        int headerSize = getHeaderSize(numLayers);
+        ByteBuffer buffer = ByteBuffer.allocate(headerSize + 8 * network.getNumWeights()).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(numLayers).putInt(network.getFanIn(0));
+        for (int layer = 0; layer < numLayers; layer++)
+            buffer.putInt(network.getNumUnits(layer)).putInt(network.getActivation(layer).ordinal());
+        buffer.position(headerSize);
+        DoubleBuffer weights = buffer.asDoubleBuffer();
+        for (int layer = 0; layer < numLayers; layer++)
+            weights.put(network.getWeights(layer));
+        buffer.rewind();
+
+        RandomAccessFile file = new RandomAccessFile(filename, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            channel.truncate(0);
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * This method loads a network saved by save
+     * @param filename the name of the model file
+     * @return the network
+     * @throws IOException if the file cannot be read or is not a model file
+     */
+    public static FeedForwardNetwork load(String filename) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if (size < 16)
+                throw new IOException(filename + " is not a network model file");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getInt() != MAGIC)
+                throw new IOException(filename + " is not a network model file");
+            int version = buffer.getInt();
+            if (version != VERSION)
+                throw new IOException(filename + ": unsupported model version " + version);
+            int numLayers = buffer.getInt();
+            int nIn = buffer.getInt();
+            if (numLayers < 1 || nIn < 1 || numLayers > (size - 16) / 8)
+                throw new IOException(filename + " is corrupt");
+
+            int numUnits[] = new int[numLayers];
+            Activation activations[] = new Activation[numLayers];
+            long numWeights = 0;
+            for (int layer = 0, fanIn = nIn; layer < numLayers; layer++) {
+                numUnits[layer] = buffer.getInt();
+                int activation = buffer.getInt();
+                if (numUnits[layer] < 1 || activation < 0 || activation >= Activation.values().length)
+                    throw new IOException(filename + " is corrupt");
+                activations[layer] = Activation.values()[activation];
+                numWeights += (long) numUnits[layer] * fanIn;
+                fanIn = numUnits[layer] + 1;
+            }
+            int headerSize = getHeaderSize(numLayers);
+            if (size != headerSize + 8 * numWeights)
+                throw new IOException(filename + " is corrupt");
+
+            FeedForwardNetwork network = new FeedForwardNetwork(nIn, Arrays.copyOf(numUnits, numLayers - 1), numUnits[numLayers - 1]);
+            buffer.position(headerSize);
+            DoubleBuffer weights = buffer.asDoubleBuffer();
+            for (int layer = 0; layer < numLayers; layer++) {
+                network.setActivation(layer, activations[layer]);
+                weights.get(network.getWeights(layer));
+            }
+            return network;
+        } finally {
+            file.close();
+        }
+    }
+
+    private static int getHeaderSize(int numLayers){
+        int size = 16 + 8 * numLayers;
+        return (size + 7) & ~7; //the weights start on a multiple of 8 bytes
+    }
+}
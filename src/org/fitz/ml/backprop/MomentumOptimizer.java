@@ -0,0 +1,27 @@
+package org.fitz.ml.backprop;
+
+/**
+ * This class updates the weights by gradient descent with momentum:
+ *   Δwji(n) = eta * gji + αΔwji(n-1)
+ * The previous update Δwji(n-1) of every weight is kept in an array laid out like the weights of its layer.
+ */
+public class MomentumOptimizer implements Optimizer {
+    private double prevDeltaWji[][]; //previous update of each weight
+
+    public MomentumOptimizer(FeedForwardNetwork network){
+        prevDeltaWji = new double[network.getNumLayers()][];
+        for (int layer = 0; layer < prevDeltaWji.length; layer++)
+            prevDeltaWji[layer] = new double[network.getWeights(layer).length];
+    }
+
+    @Override
+    public void update(int layer, double w[], double gradient[], double scale, double eta, double α) {
+        double prev[] = prevDeltaWji[layer];
+        double etaScale = eta * scale;
+        for (int ji = 0; ji < w.length; ji++) {
+            double Δwjin = etaScale * gradient[ji] + α * prev[ji];
+            w[ji] += Δwjin;
+            prev[ji] = Δwjin;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.fitz.ml.backprop;
+
+/**
+ * This class updates the weights by gradient descent with Nesterov's accelerated momentum.
+ * The gradient is computed at the current weights, using the equivalent form
+ *   vji(n) = μ * vji(n-1) + eta * gji
+ *   wji = wji - μ * vji(n-1) + (1 + μ) * vji(n)
+ * so no extra pass at the look-ahead weights is needed.
+ */
+public class NesterovOptimizer implements Optimizer {
+    private double velocity[][]; //velocity of each weight
+
+    public NesterovOptimizer(FeedForwardNetwork network){
+        velocity = new double[network.getNumLayers()][];
+        for (int layer = 0; layer < velocity.length; layer++)
+            velocity[layer] = new double[network.getWeights(layer).length];
+    }
+
+    @Override
+    public void update(int layer, double w[], double gradient[], double scale, double eta, double μ) {
+        double v[] = velocity[layer];
+        double etaScale = eta * scale;
+        for (int ji = 0; ji < w.length; ji++) {
+            double prev = v[ji];
+            double vji = μ * prev + etaScale * gradient[ji];
+            w[ji] += (1 + μ) * vji - μ * prev;
+            v[ji] = vji;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.fitz.ml.backprop;
+
+/**
+ * This interface is implemented by the rules used to update the weights of a network from their gradients.
+ * An optimizer keeps its state (for example the previous update of each weight) in arrays laid out
+ * like the weights of each layer, so it belongs to one network and must not be shared between threads.
+ * The gradients are those computed by backpropagation, δj * xji, which point in the direction
+ * that reduces the error, so the updates are added to the weights.
+ */
+public interface Optimizer {
+
+    /**
+     * This method updates the weights of a layer
+     * @param layer the index of the layer
+     * @param w the weights of the layer
+     * @param gradient the gradient of each weight (same layout as the weights)
+     * @param scale the factor applied to the gradients (1 / number of examples)
+     * @param eta the learning rate
+     * @param momentum the momentum used to specify the dependence on the previous weight update
+     */
+    void update(int layer, double w[], double gradient[], double scale, double eta, double momentum);
+}
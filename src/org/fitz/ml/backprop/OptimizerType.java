@@ -0,0 +1,42 @@
+package org.fitz.ml.backprop;
+
+import org.fitz.ml.constants.AnnConstants;
+
+/**
+ * This enum is used to select how the weights are updated from their gradients:
+ * SGD      - gradient descent with momentum: Δwji(n) = eta * gji + αΔwji(n-1)
+ * NESTEROV - gradient descent with Nesterov's accelerated momentum
+ * RMSPROP  - the learning rate of each weight is divided by a running average of the magnitude of its gradients
+ * ADAM     - running averages of the gradients and of their magnitude, with bias correction
+ */
+public enum OptimizerType {
+    SGD, NESTEROV, RMSPROP, ADAM;
+
+    /**
+     * This method creates an optimizer for a network
+     * @param network the network whose weights are updated
+     * @return a new optimizer with its own state
+     */
+    public Optimizer create(FeedForwardNetwork network){
+        switch (this) {
+            case NESTEROV:
+                return new NesterovOptimizer(network);
+            case RMSPROP:
+                return new RMSPropOptimizer(network, AnnConstants.RMSPROP_DECAY, AnnConstants.OPTIMIZER_EPSILON);
+            case ADAM:
+                return new AdamOptimizer(network, AnnConstants.ADAM_BETA1, AnnConstants.ADAM_BETA2, AnnConstants.OPTIMIZER_EPSILON);
+            default:
+                return new MomentumOptimizer(network);
+        }
+    }
+
+    /**
+     * This method finds an optimizer by name, ignoring case
+     * @param name the name of the optimizer ("sgd", "nesterov", "rmsprop", "adam")
+     * @return the optimizer type
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static OptimizerType parse(String name){
+        return valueOf(name.toUpperCase());
+    }
+}
@@ -0,0 +1,232 @@
+package org.fitz.ml.backprop;
+
+import org.fitz.ml.constants.AnnConstants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class runs the Backpropagation algorithm on several threads.
+ * The examples are split into contiguous shards, one per worker. Every worker propagates its examples
+ * through the shared weights of the network with its own workspace, and the workers either combine their
+ * gradients once per mini-batch (SYNCHRONOUS) or update the shared weights directly (HOGWILD).
+ */
+public class ParallelTrainer {
+    private int threads;
+    private TrainingMode mode;
+    private int batchSize = AnnConstants.PARALLEL_BATCH_SIZE;
+    private Activation hiddenActivation = Activation.SIGMOID;
+    private Activation outputActivation = Activation.SIGMOID;
+    private OptimizerType optimizerType = OptimizerType.SGD;
+    private Backpropagation bp;
+    private long examplesProcessed = 0;
+    private long trainingTime = 0; //nanoseconds
+
+    /**
+     * @param threads the number of worker threads
+     * @param mode how the workers combine their updates
+     */
+    public ParallelTrainer(int threads, TrainingMode mode){
+        this.threads = Math.max(1, threads);
+        this.mode = mode;
+    }
+
+    /**
+     * This method trains a new network with one hidden layer on the examples
+     * @see #runBackprop(ArrayList, double, int, int, int[], int, double, boolean)
+     */
+    public Backpropagation runBackprop(ArrayList<Example> examples, double eta, int nIn, int nOut, int nHidden, int iterations, double momentum, boolean useWeightDecay) {
+        return runBackprop(examples, eta, nIn, nOut, new int[]{nHidden}, iterations, momentum, useWeightDecay);
+    }
+
+    /**
+     * This method trains a new network on the examples
+     * @param examples the list of training examples
+     * @param eta the learning rate
+     * @param nIn the number of inputs
+     * @param nOut the number of outputs
+     * @param hidden the number of units in each hidden layer
+     * @param iterations the number of iterations
+     * @param momentum the momentum used to specify the dependence on the previous weight update
+     * @param useWeightDecay boolean specifying whether to use weight decay
+     * @return the backpropagation object holding the trained network (e.g. for the Classifier)
+     */
+    public Backpropagation runBackprop(ArrayList<Example> examples, double eta, int nIn, int nOut, int hidden[], int iterations, double momentum, boolean useWeightDecay) {
+        FeedForwardNetwork network = new FeedForwardNetwork(nIn, hidden, nOut);
+        network.setActivations(hiddenActivation, outputActivation);
+        bp = new Backpropagation(network);
+        bp.setOptimizer(optimizerType);
+
+        Backpropagation workers[] = new Backpropagation[threads];
+        double workerGradients[][][] = new double[threads][][];
+        for (int w = 0; w < threads; w++) {
+            workers[w] = new Backpropagation(network);
+            workers[w].setOptimizer(optimizerType); //each HOGWILD worker keeps its own optimizer state
+            if (mode == TrainingMode.SYNCHRONOUS)
+                workerGradients[w] = workers[w].newGradients();
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < iterations; i++) {
+                if (mode == TrainingMode.HOGWILD)
+                    runShards(pool, workers, null, examples, 0, examples.size(), eta, momentum, useWeightDecay);
+                else
+                    trainSynchronous(pool, workers, workerGradients, examples, eta, momentum, useWeightDecay);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        trainingTime = System.nanoTime() - start;
+        examplesProcessed = (long) iterations * examples.size();
+
+        return bp;
+    }
+
+    /**
+     * This method passes once over the examples in mini-batches. The gradients of each batch are
+     * computed by the workers, summed in worker order and applied to the shared weights once.
+     */
+    private void trainSynchronous(ForkJoinPool pool, Backpropagation workers[], double workerGradients[][][], ArrayList<Example> examples,
+                                  double eta, double momentum, boolean useWeightDecay){
+        int size = (batchSize <= 0 || batchSize > examples.size()) ? examples.size() : batchSize;
+        double gradients[][] = workerGradients[0];
+
+        for (int from = 0; from < examples.size(); from += size) {
+            int to = Math.min(from + size, examples.size());
+            for (double workerGradient[][] : workerGradients)
+                for (double gradient[] : workerGradient)
+                    Arrays.fill(gradient, 0);
+
+            runShards(pool, workers, workerGradients, examples, from, to, eta, momentum, useWeightDecay);
+
+            for (int w = 1; w < workerGradients.length; w++)
+                for (int layer = 0; layer < gradients.length; layer++) {
+                    double sum[] = gradients[layer];
+                    double gradient[] = workerGradients[w][layer];
+                    for (int ji = 0; ji < sum.length; ji++)
+                        sum[ji] += gradient[ji];
+                }
+            bp.applyGradients(gradients, 1.0 / (to - from), eta, momentum, useWeightDecay);
+        }
+    }
+
+    /**
+     * This method splits a range of examples into one shard per worker and runs the workers on the pool
+     * @param workerGradients the gradients accumulated by each worker (null to let the workers update the weights)
+     */
+    private void runShards(ForkJoinPool pool, Backpropagation workers[], double workerGradients[][][], ArrayList<Example> examples,
+                           int from, int to, double eta, double momentum, boolean useWeightDecay){
+        ShardTask tasks[] = new ShardTask[workers.length];
+        int n = to - from;
+        for (int w = 0; w < workers.length; w++) {
+            int shardFrom = from + (int) ((long) n * w / workers.length);
+            int shardTo = from + (int) ((long) n * (w + 1) / workers.length);
+            tasks[w] = new ShardTask(workers[w], (workerGradients != null) ? workerGradients[w] : null,
+                    examples, shardFrom, shardTo, eta, momentum, useWeightDecay);
+            pool.execute(tasks[w]);
+        }
+        for (ShardTask task : tasks)
+            task.join();
+    }
+
+    /**
+     * This method returns the training throughput of the last run
+     * @return the number of examples processed per second
+     */
+    public double getExamplesPerSecond(){
+        return (trainingTime > 0) ? examplesProcessed / (trainingTime / 1e9) : 0;
+    }
+
+    public long getExamplesProcessed(){
+        return examplesProcessed;
+    }
+
+    /**
+     * @return the training time of the last run in seconds
+     */
+    public double getTrainingTime(){
+        return trainingTime / 1e9;
+    }
+
+    /**
+     * This method sets the number of examples per synchronous update
+     * @param batchSize the mini-batch size (0 = one full-batch update per iteration)
+     */
+    public void setBatchSize(int batchSize){
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize(){
+        return batchSize;
+    }
+
+    /**
+     * This method sets the activation functions of the networks created by runBackprop
+     * @param hidden the activation function of the hidden units
+     * @param output the activation function of the output units
+     */
+    public void setActivations(Activation hidden, Activation output){
+        this.hiddenActivation = hidden;
+        this.outputActivation = output;
+    }
+
+    /**
+     * This method sets how the weights are updated from their gradients
+     * @param optimizerType the optimizer (SGD with momentum by default)
+     */
+    public void setOptimizer(OptimizerType optimizerType){
+        this.optimizerType = optimizerType;
+    }
+
+    public int getThreads(){
+        return threads;
+    }
+
+    public TrainingMode getMode(){
+        return mode;
+    }
+
+    public Backpropagation getBackpropagation(){
+        return bp;
+    }
+
+    /**
+     * This class runs one worker on its shard of the examples
+     */
+    private static class ShardTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private Backpropagation worker;
+        private double gradients[][];
+        private ArrayList<Example> examples;
+        private int from;
+        private int to;
+        private double eta;
+        private double momentum;
+        private boolean useWeightDecay;
+
+        ShardTask(Backpropagation worker, double gradients[][], ArrayList<Example> examples, int from, int to,
+                  double eta, double momentum, boolean useWeightDecay) {
+            this.worker = worker;
+            this.gradients = gradients;
+            this.examples = examples;
+            this.from = from;
+            this.to = to;
+            this.eta = eta;
+            this.momentum = momentum;
+            this.useWeightDecay = useWeightDecay;
+        }
+
+        @Override
+        protected void compute() {
+            if (gradients != null)
+                worker.accumulateGradients(examples, from, to, gradients);
+            else
+                worker.trainEpoch(examples, from, to, eta, momentum, useWeightDecay);
+        }
+    }
+}
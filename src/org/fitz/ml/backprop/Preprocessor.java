@@ -22,10 +22,13 @@ public class Preprocessor {
     private ArrayList<Example> testSet;
     private Attributes inputAttributes;
     private Attributes targetAttributes;
+    private int hiddenLayers[]; //hidden layer sizes given in the attribute file (null if not given)
+    private ExampleEncoder encoder; //encodes the datasets with the code tables of the attributes
 
 
     /**
-     * This function parses an attribute file and creates a list of attributes
+     * This function parses an attribute file and creates a list of attributes.
+     * A line starting with @hidden gives the number of units in each hidden layer of the network
      * @param filename the filename of the attribute file
      */
     public void parseAttributeFile(String filename) {
@@ -39,9 +42,17 @@ public class Preprocessor {
 
             int count = 0;
             temp = inputAttributes;
+            hiddenLayers = null;
             while ((line = br.readLine()) != null) {
                 tempAttr = line.trim().split("\\s+");
 
+                if (tempAttr[0].equalsIgnoreCase(AnnConstants.HIDDEN_LAYERS_DIRECTIVE)) { //e.g. "@hidden 8 4" for two hidden layers
+                    hiddenLayers = new int[tempAttr.length - 1];
+                    for (int i = 1; i < tempAttr.length; i++)
+                        hiddenLayers[i - 1] = Integer.parseInt(tempAttr[i]);
+                    continue;
+                }
+
                 if(line.trim().isEmpty()){ //switch from input attributes to targetAttributes if new line encountered
                     temp = targetAttributes;
                     count = 0;
@@ -71,6 +82,9 @@ public class Preprocessor {
             System.out.println("Processed Attribute File");
             System.out.println("Found " + inputAttributes.size() + " input  attribute(s)");
             System.out.println("Found " + targetAttributes.size() + " output  attribute(s)");
+            if (hiddenLayers != null)
+                System.out.println("Found hidden layer(s) " + Arrays.toString(hiddenLayers));
+            encoder = new ExampleEncoder(inputAttributes, targetAttributes);
 
         } catch (IOException e) {
             System.out.println(e.getMessage());
@@ -83,6 +97,7 @@ public class Preprocessor {
      * This function parses a numeric dataset file (training or test data)
      * and creates a set of instances of the form ArrayList<Example>>
      * where Example represents an instance containing vectors <x, t>.
+     * The lines are encoded with the code tables of the attributes, built once by parseAttributeFile.
      * @param filename the filename of the data-file
      * @return the examples parsed from the file
      */
@@ -90,30 +105,7 @@ public class Preprocessor {
     public ArrayList<Example> parseNumericDataset(String filename) {
         ArrayList<Example> examples = new ArrayList<Example>();
         try {
-            BufferedReader br = new BufferedReader(new FileReader(filename));
-            String line;
-            String vals[];
-
-            while ((line = br.readLine()) != null) {
-                vals = line.trim().split("\\s+");
-
-                if (vals.length >= inputAttributes.size()) {
-                    int nIn = getVectorSize(inputAttributes); //number of attributes
-                    int nOut = getVectorSize(targetAttributes);
-                    Example example = new Example(nIn, nOut);
-
-                    String inputs[] = Arrays.copyOfRange(vals, 0, inputAttributes.size());
-                    String outputs[] = Arrays.copyOfRange(vals, inputAttributes.size(), vals.length);
-
-                    double x[] = getXvector(inputs, inputAttributes, nIn);
-                    double t[] = getTargetVector(outputs, targetAttributes, nOut);
-
-                    example.setX(x);
-                    example.setT(t);
-                    examples.add(example);
-                }
-            }
-
+            examples = encoder.toExamples(encoder.encodeFile(filename), false);
         } catch (IOException e) {
             System.out.println(e.getMessage());
             e.printStackTrace();
@@ -135,49 +127,49 @@ public class Preprocessor {
     public ArrayList<Example> parseDataset(String filename) {
         ArrayList<Example> examples = new ArrayList<Example>();
         try {
-            BufferedReader br = new BufferedReader(new FileReader(filename));
-            String line;
-            String vals[];
-
-            while ((line = br.readLine()) != null) {
-                vals = line.trim().split("\\s+");
-
-                if (vals.length >= inputAttributes.size()) {
-                    int nIn = getVectorSize(inputAttributes); //number of attributes
-                    int nOut = getVectorSize(targetAttributes);
-                    Example example;
-
-                    ArrayList<String> dataInstance = new ArrayList<String>();
-                    int numAttributes = inputAttributes.size();
-                    dataInstance.addAll(Arrays.asList(vals).subList(0, numAttributes)); //copy attributes except target attribute
-
-                    if(isNumeric(targetAttributes)) {
-                        example = new Example(nIn, nOut, dataInstance);
-                    }
-                    else {
-                        example = new Example(nIn, nOut, dataInstance, vals[numAttributes]);
-                    }
-
-
-                    String inputs[] = Arrays.copyOfRange(vals, 0, inputAttributes.size());
-                    String outputs[] = Arrays.copyOfRange(vals, inputAttributes.size(), vals.length);
+            examples = encoder.toExamples(encoder.encodeFile(filename), true);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+        }
 
-                    double x[] = getXvector(inputs, inputAttributes, nIn);
-                    double t[] = getTargetVector(outputs, targetAttributes, nOut);
+        System.out.println("Processed dataset file (" + filename + ")");
+        System.out.println("Found " + examples.size() + " instances");
+        return examples;
+    }
 
-                    example.setX(x); //store the x vector
-                    example.setT(t); //store the target vector
-                    examples.add(example);
+    /**
+     * This method parses a dataset file through a binary cache of its encoded examples (filename + CACHE_EXTENSION).
+     * The cache is created the first time and reused until the dataset file or the attributes change,
+     * so later runs skip parsing the text.
+     * @param filename the dataset file
+     * @return the examples of the file (with their attribute values if all the input attributes are non-numeric)
+     */
+    public ArrayList<Example> parseCachedDataset(String filename) {
+        ArrayList<Example> examples = new ArrayList<Example>();
+        String cacheFile = filename + AnnConstants.CACHE_EXTENSION;
+        try {
+            double data[] = encoder.loadCache(cacheFile, filename);
+            if (data != null)
+                System.out.println("Loaded encoded examples from " + cacheFile);
+            else {
+                data = encoder.encodeFile(filename);
+                try {
+                    encoder.saveCache(data, cacheFile, filename);
+                    System.out.println("Saved encoded examples to " + cacheFile);
+                } catch (IOException e) { //the examples can still be used without a cache
+                    System.out.println(e.getMessage());
+                    e.printStackTrace();
                 }
             }
-
+            examples = encoder.toExamples(data, !isNumeric(inputAttributes));
         } catch (IOException e) {
             System.out.println(e.getMessage());
             e.printStackTrace();
         }
 
         System.out.println("Processed dataset file (" + filename + ")");
-        System.out.println("Found " + examples.size() + " instances");
+        System.out.println("Found " + examples.size() + " instance(s)");
         return examples;
     }
 
@@ -326,6 +318,8 @@ public class Preprocessor {
 
     public Attributes getInputAttributes(){return inputAttributes;}
     public Attributes getTargetAttributes(){return targetAttributes;}
+    public int[] getHiddenLayers(){return hiddenLayers;}
+    public ExampleEncoder getEncoder(){return encoder;}
 
     public int getXSize(){
         return getVectorSize(inputAttributes);
@@ -0,0 +1,38 @@
+package org.fitz.ml.backprop;
+
+/**
+ * This class updates the weights with RMSProp: the learning rate of each weight is divided
+ * by the root of a running average of its squared gradients
+ *   rji = ρ * rji + (1 - ρ) * gji^2
+ *   wji = wji + eta * gji / (sqrt(rji) + ε)
+ * The momentum is not used.
+ */
+public class RMSPropOptimizer implements Optimizer {
+    private double meanSquares[][]; //running average of the squared gradient of each weight
+    private double ρ;
+    private double ε;
+
+    /**
+     * @param network the network whose weights are updated
+     * @param ρ the decay of the running average
+     * @param ε a small value that keeps the division finite
+     */
+    public RMSPropOptimizer(FeedForwardNetwork network, double ρ, double ε){
+        this.ρ = ρ;
+        this.ε = ε;
+        meanSquares = new double[network.getNumLayers()][];
+        for (int layer = 0; layer < meanSquares.length; layer++)
+            meanSquares[layer] = new double[network.getWeights(layer).length];
+    }
+
+    @Override
+    public void update(int layer, double w[], double gradient[], double scale, double eta, double momentum) {
+        double r[] = meanSquares[layer];
+        for (int ji = 0; ji < w.length; ji++) {
+            double gji = gradient[ji] * scale;
+            double rji = ρ * r[ji] + (1 - ρ) * gji * gji;
+            w[ji] += eta * gji / (Math.sqrt(rji) + ε);
+            r[ji] = rji;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.fitz.ml.backprop;
+
+/**
+ * This enum is used to select how worker threads combine their updates
+ * when a network is trained in parallel:
+ * SYNCHRONOUS - the workers compute the gradients of their part of each mini-batch,
+ *               which are summed and applied once per mini-batch
+ * HOGWILD     - each worker trains on its own shard of the examples and
+ *               updates the shared weights directly without locking
+ */
+public enum TrainingMode {
+    SYNCHRONOUS, HOGWILD;
+}
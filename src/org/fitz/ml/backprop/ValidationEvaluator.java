@@ -0,0 +1,243 @@
+package org.fitz.ml.backprop;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This class computes the error of a network on a validation set while the network is trained,
+ * and remembers the epoch (and optionally the weights) with the smallest error.
+ * To make the evaluation cheaper it can
+ *  - evaluate only every n epochs (setInterval)
+ *  - evaluate a stratified subsample of the validation set, chosen once so the errors stay comparable (setSampleSize)
+ *  - evaluate on its own thread (setAsync): the weights are copied to a snapshot and training continues
+ *    while the snapshot is evaluated. At most one evaluation is pending; the next one waits for it.
+ */
+public class ValidationEvaluator {
+    private List<Example> validationSet;
+    private int interval = 1;
+    private boolean keepBestWeights = false;
+
+    private FeedForwardNetwork snapshot; //copy of the network evaluated on the separate thread
+    private Workspace workspace;        //buffers of the evaluations (only one runs at a time)
+    private double snapshotWeights[];
+    private double bestWeights[];
+    private double bestError = Double.MAX_VALUE;
+    private int bestEpoch = 0;
+    private int evaluations = 0;
+
+    private ExecutorService executor; //null when evaluating on the training thread
+    private Future<?> pending;
+
+    /**
+     * @param network the network being trained (its layout and activation functions are copied)
+     * @param validationSet the examples used to compute the error
+     */
+    public ValidationEvaluator(FeedForwardNetwork network, List<Example> validationSet){
+        this.validationSet = validationSet;
+        this.snapshot = new FeedForwardNetwork(network);
+        this.workspace = snapshot.newWorkspace();
+    }
+
+    /**
+     * This method sets how often the error is computed
+     * @param interval the number of epochs between evaluations (1 = every epoch)
+     */
+    public void setInterval(int interval){
+        this.interval = Math.max(1, interval);
+    }
+
+    public int getInterval(){
+        return interval;
+    }
+
+    /**
+     * This method replaces the validation set by a stratified subsample: every target class keeps
+     * its share of the examples (and at least one example)
+     * @param sampleSize the number of examples to evaluate (0 or more than the validation set keeps all examples)
+     * @param random the random generator used to pick the examples
+     */
+    public void setSampleSize(int sampleSize, Random random){
+        if (sampleSize <= 0 || sampleSize >= validationSet.size())
+            return;
+
+        HashMap<String, List<Example>> classes = new HashMap<String, List<Example>>();
+        ArrayList<String> keys = new ArrayList<String>(); //classes in order of appearance
+        for (Example example : validationSet) {
+            String key = getClassKey(example);
+            List<Example> members = classes.get(key);
+            if (members == null) {
+                members = new ArrayList<Example>();
+                classes.put(key, members);
+                keys.add(key);
+            }
+            members.add(example);
+        }
+
+        ArrayList<Example> sample = new ArrayList<Example>(sampleSize);
+        for (String key : keys) {
+            List<Example> members = new ArrayList<Example>(classes.get(key));
+            int count = Math.max(1, (int) Math.round((double) sampleSize * members.size() / validationSet.size()));
+            for (int i = 0; i < count && i < members.size(); i++) { //partial Fisher-Yates shuffle
+                int j = i + random.nextInt(members.size() - i);
+                Example swap = members.get(i);
+                members.set(i, members.get(j));
+                members.set(j, swap);
+                sample.add(members.get(i));
+            }
+        }
+        validationSet = sample;
+    }
+
+    /**
+     * This method makes the evaluations run on a separate thread
+     * @param async true to evaluate snapshots of the weights on a separate thread
+     */
+    public void setAsync(boolean async){
+        if (async && executor == null)
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "validation");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        else if (!async && executor != null) {
+            finish();
+        }
+    }
+
+    /**
+     * @param keepBestWeights true to keep a copy of the weights with the smallest error (see getBestWeights)
+     */
+    public void setKeepBestWeights(boolean keepBestWeights){
+        this.keepBestWeights = keepBestWeights;
+    }
+
+    /**
+     * This method is called after every epoch. It evaluates the network if the epoch is due
+     * (epochs interval - 1, 2 * interval - 1, ...)
+     * @param network the network being trained
+     * @param epoch the index of the epoch that just finished
+     */
+    public void epochFinished(FeedForwardNetwork network, final int epoch){
+        if ((epoch + 1) % interval != 0)
+            return;
+
+        if (executor == null) {
+            evaluate(network, epoch);
+            return;
+        }
+
+        waitForPending();
+        snapshotWeights = network.copyWeights(snapshotWeights); //the pending evaluation is done with the previous snapshot
+        pending = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                snapshot.setWeights(snapshotWeights);
+                evaluate(snapshot, epoch);
+            }
+        });
+    }
+
+    /**
+     * This method waits for the last evaluation and stops the evaluation thread
+     */
+    public void finish(){
+        if (executor != null) {
+            waitForPending();
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * This method computes the mean squared error of a network on a list of examples:
+     * 1/n * ∑d ∑k (tkd - okd)^2
+     * @param network the network
+     * @param workspace the buffers used to propagate the examples
+     * @param examples the examples
+     * @return the error
+     */
+    public static double error(FeedForwardNetwork network, Workspace workspace, List<Example> examples){
+        double errorSum = 0;
+        for (Example example : examples) {
+            double output[] = network.forward(example.getX(), workspace); //output[0] is x0
+            double t[] = example.getT();
+            for (int k = 1; k < output.length; k++) {
+                double d = t[k] - output[k];
+                errorSum += d * d;
+            }
+        }
+        return (1.0 / examples.size()) * errorSum;
+    }
+
+    private void evaluate(FeedForwardNetwork network, int epoch){
+        double error = error(network, workspace, validationSet);
+        synchronized (this) {
+            evaluations++;
+            if (error < bestError) {
+                bestError = error;
+                bestEpoch = epoch;
+                if (keepBestWeights)
+                    bestWeights = network.copyWeights(bestWeights);
+            }
+        }
+    }
+
+    private void waitForPending(){
+        if (pending == null)
+            return;
+        try {
+            pending.get();
+        } catch (Exception e) {
+            throw new IllegalStateException("validation failed", e);
+        }
+        pending = null;
+    }
+
+    private static String getClassKey(Example example){
+        if (example.targetOutputSaved())
+            return example.getTargetOutput();
+        StringBuilder key = new StringBuilder();
+        double t[] = example.getT();
+        for (int k = 1; k < t.length; k++)
+            key.append(Workspace.threshold(t[k])).append(',');
+        return key.toString();
+    }
+
+    /**
+     * @return the smallest error found so far (Double.MAX_VALUE before the first evaluation)
+     */
+    public synchronized double getBestError(){
+        return bestError;
+    }
+
+    /**
+     * @return the epoch with the smallest error found so far
+     */
+    public synchronized int getBestEpoch(){
+        return bestEpoch;
+    }
+
+    /**
+     * @return a flat copy of the weights with the smallest error (null if not kept or not evaluated yet)
+     */
+    public synchronized double[] getBestWeights(){
+        return bestWeights;
+    }
+
+    public synchronized int getEvaluations(){
+        return evaluations;
+    }
+
+    public int getSampleSize(){
+        return validationSet.size();
+    }
+}
@@ -0,0 +1,55 @@
+package org.fitz.ml.backprop;
+
+/**
+ * This class holds the buffers used to propagate examples through a network:
+ * the outputs and the error terms δ of each layer. The buffers are allocated once
+ * (see FeedForwardNetwork.newWorkspace) and reused for every example, so a forward or backward
+ * pass does not allocate anything. Each thread needs its own workspace, while the weights
+ * of the network can be shared.
+ */
+public class Workspace {
+    private double outputs[][]; //outputs of each layer (outputs[layer][0] = 1, the output of unit j is at j + 1)
+    private double errors[][];  //error term δ of each unit in a layer
+
+    Workspace(int numUnits[]){
+        outputs = new double[numUnits.length][];
+        errors = new double[numUnits.length][];
+        for (int layer = 0; layer < numUnits.length; layer++) {
+            outputs[layer] = new double[numUnits[layer] + 1];
+            outputs[layer][0] = 1; //x0 of the next layer
+            errors[layer] = new double[numUnits[layer]];
+        }
+    }
+
+    public double[] getOutputs(int layer){
+        return outputs[layer];
+    }
+
+    public double[] getErrors(int layer){
+        return errors[layer];
+    }
+
+    /**
+     * This method converts a network output or target value to the integer it stands for
+     * (rounding half up, the way the values were compared with String.format("%.0f") before)
+     * @param value the value
+     * @return the rounded value
+     */
+    public static long threshold(double value){
+        return (value >= 0) ? Math.round(value) : -Math.round(-value);
+    }
+
+    /**
+     * This method checks if the outputs of the last forward pass match a target vector
+     * once both are thresholded to integers
+     * @param t the target vector (t[0] is unused)
+     * @return true if every output matches its target, false otherwise
+     */
+    public boolean isCorrect(double t[]){
+        double output[] = outputs[outputs.length - 1];
+        for (int k = 1; k < output.length; k++)
+            if (threshold(output[k]) != threshold(t[k]))
+                return false;
+        return true;
+    }
+}
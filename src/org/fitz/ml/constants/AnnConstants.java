@@ -21,9 +21,21 @@ public class AnnConstants {
     public static double MAX_WEIGHT = 0.05;
     public static double ETA = 0.05; //learning rate
     public static int N_HIDDEN = 3;
+    public static String HIDDEN_LAYERS_DIRECTIVE = "@hidden"; //attribute file line giving the size of each hidden layer
+    public static String CACHE_EXTENSION = ".cache"; //added to a dataset file name to name its cache of encoded examples
     public static int ITERATIONS = 10000;
     public static int MAX_ITERATIONS = 30000;
+    public static int PATIENCE = 1000; //iterations without a smaller validation error before training stops
+    public static int NO_EARLY_STOPPING = 0;
     public static double MOMENTUM = 0;
+    public static double RMSPROP_DECAY = 0.9; //decay of the running average of the squared gradients
+    public static double ADAM_BETA1 = 0.9; //decay of the running average of the gradients
+    public static double ADAM_BETA2 = 0.999; //decay of the running average of the squared gradients
+    public static double OPTIMIZER_EPSILON = 1e-8;
+    public static int BATCH_SIZE = 1; //examples per weight update (1 = stochastic, 0 = full batch)
+    public static int FULL_BATCH = 0;
+    public static int THREADS = 1; //worker threads used for training (1 = sequential)
+    public static int PARALLEL_BATCH_SIZE = 64; //examples per synchronous parallel update
     public static double CLOSE_TO_ONE = 0.9; //close to 1 since sigmoid cannot represent 1
     public static double CLOSE_TO_0 = 0.1; //close to 0 since sigmoid cannot represent 0
 
@@ -33,5 +33,14 @@ public class DtreeConstants {
     public static Double CORRUPT_DATA_MAX_FACTOR = 0.2;
     public static Double CORRUPT_DATA_STEP_FACTOR = 0.02;
 
+    //number of threads used to evaluate candidate attributes (1 = sequential)
+    public static int PARALLELISM = Runtime.getRuntime().availableProcessors();
+    //minimum number of examples at a node before the attributes are evaluated in parallel
+    public static int PARALLEL_SPLIT_MIN_ROWS = 5000;
+    //minimum number of examples in a branch before its subtree is built as a separate task
+    public static int PARALLEL_SUBTREE_MIN_ROWS = 1000;
+    //subtrees below this depth are always built sequentially
+    public static int PARALLEL_SUBTREE_MAX_DEPTH = 8;
+
 }
 
@@ -32,5 +32,7 @@ public class GAconstants {
     public static int MAX_NUM_GENERATIONS = 100;
     public static int NUM_GENERATIONS = 0;
 
+    public static int THREADS = Runtime.getRuntime().availableProcessors(); //folds trained at the same time in cross validation
+
 
 }
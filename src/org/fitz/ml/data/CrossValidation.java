@@ -0,0 +1,151 @@
+package org.fitz.ml.data;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class runs a k-fold cross validation. The examples are split into k contiguous folds of
+ * (almost) equal size; fold i uses examples [n*i/k, n*(i+1)/k) for validation and all the others for training.
+ * The examples can optionally be shuffled once before they are split.
+ * The folds are immutable views over the example indexes, so the folds can be trained concurrently
+ * on an executor without copying or modifying the shared examples.
+ */
+public class CrossValidation {
+    private int order[];
+    private Fold folds[];
+
+    /**
+     * @param numExamples the number of examples
+     * @param k the number of folds
+     */
+    public CrossValidation(int numExamples, int k){
+        this(numExamples, k, null);
+    }
+
+    /**
+     * This constructor assigns the examples to the folds in a random order
+     * (useful when the examples are sorted, e.g. by class)
+     * @param numExamples the number of examples
+     * @param k the number of folds
+     * @param random the random generator used to shuffle the examples (null to keep the dataset order)
+     */
+    public CrossValidation(int numExamples, int k, Random random){
+        if (k < 2 || k > numExamples)
+            throw new IllegalArgumentException("Cannot split " + numExamples + " example(s) into " + k + " folds");
+
+        order = new int[numExamples];
+        for (int i = 0; i < numExamples; i++)
+            order[i] = i;
+        if (random != null) {
+            for (int i = numExamples - 1; i > 0; i--) { //Fisher-Yates shuffle
+                int j = random.nextInt(i + 1);
+                int temp = order[i];
+                order[i] = order[j];
+                order[j] = temp;
+            }
+        }
+
+        folds = new Fold[k];
+        for (int i = 0; i < k; i++) {
+            int from = (int) ((long) numExamples * i / k);
+            int to = (int) ((long) numExamples * (i + 1) / k);
+            folds[i] = new Fold(i, order, from, to);
+        }
+    }
+
+    public Fold[] getFolds(){
+        return folds;
+    }
+
+    public int getK(){
+        return folds.length;
+    }
+
+    /**
+     * This method trains and evaluates every fold on a pool of threads
+     * @param learner the learner to cross validate
+     * @param threads the number of threads (1 or less = one fold after the other on the calling thread)
+     * @return the metrics of each fold, in fold order
+     */
+    public ArrayList<FoldResult> run(FoldLearner learner, int threads){
+        if (threads <= 1) {
+            ArrayList<FoldResult> results = new ArrayList<FoldResult>();
+            for (Fold fold : folds)
+                results.add(learn(learner, fold));
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, folds.length));
+        try {
+            return run(learner, executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * This method trains and evaluates every fold concurrently on an executor
+     * @param learner the learner to cross validate
+     * @param executor the executor
+     * @return the metrics of each fold, in fold order
+     */
+    public ArrayList<FoldResult> run(final FoldLearner learner, ExecutorService executor){
+        ArrayList<Future<FoldResult>> futures = new ArrayList<Future<FoldResult>>();
+        for (final Fold fold : folds)
+            futures.add(executor.submit(new Callable<FoldResult>() {
+                @Override
+                public FoldResult call() {
+                    return learn(learner, fold);
+                }
+            }));
+
+        ArrayList<FoldResult> results = new ArrayList<FoldResult>();
+        try {
+            for (Future<FoldResult> future : futures)
+                results.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Cross validation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Cross validation failed", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * This method runs the learner on a fold and records the time it took
+     */
+    private static FoldResult learn(FoldLearner learner, Fold fold){
+        long start = System.currentTimeMillis();
+        FoldResult result = learner.learn(fold);
+        result.setTrainingTime(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * @param results the metrics of each fold
+     * @return the mean accuracy over the folds
+     */
+    public static double getMeanAccuracy(ArrayList<FoldResult> results){
+        double sum = 0;
+        for (FoldResult result : results)
+            sum += result.getAccuracy();
+        return results.isEmpty() ? 0 : sum / results.size();
+    }
+
+    /**
+     * @param results the metrics of each fold
+     * @return the average number of optimal iterations over the folds (rounded down)
+     */
+    public static int getAverageOptimalIterations(ArrayList<FoldResult> results){
+        int sum = 0;
+        for (FoldResult result : results)
+            sum += result.getOptimalIterations();
+        return results.isEmpty() ? 0 : sum / results.size();
+    }
+}
@@ -0,0 +1,287 @@
+package org.fitz.ml.data;
+
+import org.fitz.ml.Attribute;
+import org.fitz.ml.AttributeType;
+import org.fitz.ml.Attributes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * This class stores a set of instances column by column instead of as rows of Strings.
+ * Each discrete attribute is dictionary-encoded into an int[] column where a cell holds the
+ * index of the value in Attribute.getValues() (or -1 if the value is unknown), and each
+ * CONTINUOUS or NUMERIC attribute is parsed once into a double[] column.
+ * Learners can then compare ints instead of Strings.
+ */
+public class Dataset {
+    public static final int UNKNOWN = -1; //code of a value that is not one of the attribute values
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Attributes attributes;
+    private int codes[][]; //dictionary-encoded columns (null for numeric columns)
+    private double values[][]; //parsed numeric columns (null for discrete columns)
+    private ArrayList<HashMap<String, Integer>> dictionaries;
+    private boolean ignoreCase = false; //true to encode values that differ from an attribute value only in case
+    private int size = 0;
+
+    public Dataset(Attributes attributes){
+        this(attributes, DEFAULT_CAPACITY);
+    }
+
+    public Dataset(Attributes attributes, int capacity){
+        int n = attributes.size();
+        this.attributes = attributes;
+        this.codes = new int[n][];
+        this.values = new double[n][];
+        this.dictionaries = new ArrayList<HashMap<String, Integer>>();
+        capacity = Math.max(capacity, 1);
+
+        for(int i = 0; i < n; i++){
+            Attribute attribute = attributes.get(i);
+            HashMap<String, Integer> dictionary = new HashMap<String, Integer>();
+            if(isNumericType(attribute.getType())) {
+                values[i] = new double[capacity];
+            }
+            else {
+                codes[i] = new int[capacity];
+                String attrVals[] = attribute.getValues();
+                for(int j = 0; j < attrVals.length; j++)
+                    if(!dictionary.containsKey(attrVals[j]))
+                        dictionary.put(attrVals[j], j);
+            }
+            dictionaries.add(dictionary);
+        }
+    }
+
+    /**
+     * This method encodes a set of instances of the form ArrayList<ArrayList<String>>
+     * (as produced by the Preprocessors) into a columnar dataset
+     * @param instances the rows to encode
+     * @param attributes the attributes describing each column
+     * @return the encoded dataset
+     */
+    public static Dataset encode(List<ArrayList<String>> instances, Attributes attributes){
+        return encode(instances, attributes, false);
+    }
+
+    /**
+     * This method encodes a set of instances into a columnar dataset
+     * @param instances the rows to encode
+     * @param attributes the attributes describing each column
+     * @param ignoreCase true to give a value that differs from an attribute value only in case
+     *                   the code of that attribute value (see setIgnoreCase)
+     * @return the encoded dataset
+     */
+    public static Dataset encode(List<ArrayList<String>> instances, Attributes attributes, boolean ignoreCase){
+        Dataset dataset = new Dataset(attributes, instances.size());
+        dataset.setIgnoreCase(ignoreCase);
+        for(ArrayList<String> instance : instances)
+            dataset.addRow(instance);
+        return dataset;
+    }
+
+    /**
+     * This method appends a row to the dataset
+     * @param row the attribute values of the row (one per attribute)
+     */
+    public void addRow(List<String> row){
+        ensureCapacity(size + 1);
+        for(int i = 0; i < codes.length; i++)
+            setString(size, i, row.get(i));
+        size++;
+    }
+
+    /**
+     * This method appends a row to the dataset
+     * @param row the attribute values of the row (one per attribute)
+     */
+    public void addRow(String row[]){
+        addRow(Arrays.asList(row));
+    }
+
+    /**
+     * This method stores a value in a cell, encoding or parsing it depending on the column type
+     * @param row the row index
+     * @param column the column (attribute) index
+     * @param value the raw value
+     */
+    public void setString(int row, int column, String value){
+        if(codes[column] != null)
+            codes[column][row] = encodeValue(column, value);
+        else
+            values[column][row] = Double.parseDouble(value);
+    }
+
+    /**
+     * This method returns the code of a value for a discrete column
+     * @param column the column (attribute) index
+     * @param value the value to look up
+     * @return the index of the value in the attribute's values or UNKNOWN
+     */
+    public int encodeValue(int column, String value){
+        Integer code = dictionaries.get(column).get(value);
+        if(code == null && ignoreCase)
+            return indexOfValue(attributes.get(column), value);
+        return (code == null) ? UNKNOWN : code;
+    }
+
+    /**
+     * This method sets whether the values added from now on are looked up ignoring case
+     * when they are not exactly one of the attribute values (the GA matches values with
+     * equalsIgnoreCase, the decision tree learner with equals)
+     * @param ignoreCase true to ignore case
+     */
+    public void setIgnoreCase(boolean ignoreCase){
+        this.ignoreCase = ignoreCase;
+    }
+
+    /**
+     * This method converts a cell back to the String used in the original dataset
+     * @param row the row index
+     * @param column the column (attribute) index
+     * @return the value as a String
+     */
+    public String getString(int row, int column){
+        if(codes[column] == null)
+            return Double.toString(values[column][row]);
+
+        int code = codes[column][row];
+        String attrVals[] = attributes.get(column).getValues();
+        return (code >= 0 && code < attrVals.length) ? attrVals[code] : "?";
+    }
+
+    /**
+     * This method decodes a row into its String form
+     * @param row the row index
+     * @return the row as an ArrayList of Strings
+     */
+    public ArrayList<String> getRow(int row){
+        ArrayList<String> instance = new ArrayList<String>();
+        for(int i = 0; i < codes.length; i++)
+            instance.add(getString(row, i));
+        return instance;
+    }
+
+    /**
+     * This method copies the codes of all discrete columns of a row into a vector
+     * @param row the row index
+     * @return a vector with one code per column (numeric columns are set to UNKNOWN)
+     */
+    public int[] getRowCodes(int row){
+        int rowCodes[] = new int[codes.length];
+        for(int i = 0; i < codes.length; i++)
+            rowCodes[i] = (codes[i] != null) ? codes[i][row] : UNKNOWN;
+        return rowCodes;
+    }
+
+    /**
+     * This method returns a vector containing the indexes of all rows (0 .. size-1)
+     * @return the row indexes
+     */
+    public int[] getRowIndexes(){
+        int rows[] = new int[size];
+        for(int i = 0; i < size; i++)
+            rows[i] = i;
+        return rows;
+    }
+
+    public int getCode(int row, int column){
+        return codes[column][row];
+    }
+
+    public void setCode(int row, int column, int code){
+        codes[column][row] = code;
+    }
+
+    public double getValue(int row, int column){
+        return values[column][row];
+    }
+
+    /**
+     * This method returns the backing array of a discrete column.
+     * Note that the array may be longer than size()
+     * @param column the column index
+     * @return the codes of the column or null if the column is numeric
+     */
+    public int[] getCodes(int column){
+        return codes[column];
+    }
+
+    /**
+     * This method returns the backing array of a numeric column.
+     * Note that the array may be longer than size()
+     * @param column the column index
+     * @return the values of the column or null if the column is discrete
+     */
+    public double[] getValues(int column){
+        return values[column];
+    }
+
+    public int[] getTargetCodes(){
+        return codes[attributes.getTargetIndex()];
+    }
+
+    public boolean isNumeric(int column){
+        return codes[column] == null;
+    }
+
+    public Attributes getAttributes() {
+        return attributes;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public int numColumns(){
+        return codes.length;
+    }
+
+    /**
+     * This method shrinks the column arrays to the number of rows
+     */
+    public void trimToSize(){
+        resize(size);
+    }
+
+    private void ensureCapacity(int capacity){
+        int current = (codes.length > 0) ? columnLength(0) : capacity;
+        if(capacity > current)
+            resize(Math.max(capacity, current * 2));
+    }
+
+    private int columnLength(int column){
+        return (codes[column] != null) ? codes[column].length : values[column].length;
+    }
+
+    private void resize(int capacity){
+        for(int i = 0; i < codes.length; i++){
+            if(codes[i] != null)
+                codes[i] = Arrays.copyOf(codes[i], capacity);
+            else
+                values[i] = Arrays.copyOf(values[i], capacity);
+        }
+    }
+
+    /**
+     * This method finds the code of a value of an attribute, ignoring case
+     * (used to encode the values of rule statements)
+     * @param attribute the attribute
+     * @param value the value to look up
+     * @return the index of the value in the attribute's values or UNKNOWN
+     */
+    public static int indexOfValue(Attribute attribute, String value){
+        String attrVals[] = attribute.getValues();
+        for(int i = 0; i < attrVals.length; i++)
+            if(attrVals[i].equalsIgnoreCase(value))
+                return i;
+        return UNKNOWN;
+    }
+
+    private static boolean isNumericType(AttributeType type){
+        return type == AttributeType.CONTINUOUS || type == AttributeType.NUMERIC;
+    }
+}
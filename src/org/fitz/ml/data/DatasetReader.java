@@ -0,0 +1,131 @@
+package org.fitz.ml.data;
+
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+
+/**
+ * This class reads the rows of a dataset file one at a time, so a file never has to fit in memory.
+ * A row is a line of values separated by spaces or tabs; empty lines are skipped.
+ * The values are cut straight out of a character buffer (no regular expression and no String per line).
+ * It is shared by the Preprocessors of all the learners.
+ */
+public class DatasetReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private Reader reader;
+    private char buffer[] = new char[BUFFER_SIZE];
+    private int position = 0; //next character to read
+    private int limit = 0;    //end of the characters in the buffer
+    private boolean endOfFile = false;
+    private ArrayList<String> values = new ArrayList<String>();
+    private long rows = 0;
+
+    /**
+     * @param filename the dataset file
+     * @throws IOException if the file cannot be opened
+     */
+    public DatasetReader(String filename) throws IOException {
+        this(new FileReader(filename));
+    }
+
+    public DatasetReader(Reader reader){
+        this.reader = reader;
+    }
+
+    /**
+     * This method reads the next row
+     * @return the values of the row, or null at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    public String[] nextRow() throws IOException {
+        values.clear();
+        while (values.isEmpty()) {
+            if (position == limit && !fill())
+                return null;
+            readLine();
+        }
+        rows++;
+        return values.toArray(new String[values.size()]);
+    }
+
+    /**
+     * This method splits the next line into values (none if the line is empty)
+     */
+    private void readLine() throws IOException {
+        int start = -1; //start of the current value
+        while (true) {
+            if (position == limit) {
+                if (start >= 0) { //keep the start of the value when the buffer is refilled
+                    int length = limit - start;
+                    if (length == buffer.length) {
+                        char larger[] = new char[buffer.length * 2];
+                        System.arraycopy(buffer, start, larger, 0, length);
+                        buffer = larger;
+                    } else
+                        System.arraycopy(buffer, start, buffer, 0, length);
+                    position = limit = length;
+                    start = 0;
+                }
+                if (!fill()) {
+                    if (start >= 0)
+                        values.add(new String(buffer, start, position - start));
+                    return;
+                }
+            }
+
+            char c = buffer[position];
+            if (c == '\n' || isSeparator(c)) {
+                if (start >= 0) {
+                    values.add(new String(buffer, start, position - start));
+                    start = -1;
+                }
+                position++;
+                if (c == '\n')
+                    return;
+            } else {
+                if (start < 0)
+                    start = position;
+                position++;
+            }
+        }
+    }
+
+    /**
+     * This method reads more characters after the ones in the buffer
+     * @return false at the end of the file
+     */
+    private boolean fill() throws IOException {
+        if (endOfFile)
+            return false;
+        if (position == limit && limit == buffer.length) //the buffer is full and has been read
+            position = limit = 0;
+        int n = reader.read(buffer, limit, buffer.length - limit);
+        if (n <= 0) {
+            endOfFile = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    /**
+     * This method checks if a character separates values (the same characters as \s in a regular expression, except \n)
+     */
+    private static boolean isSeparator(char c){
+        return c == ' ' || c == '\t' || c == '\r' || c == '\f' || c == '\u000B';
+    }
+
+    /**
+     * @return the number of rows read so far
+     */
+    public long getRows(){
+        return rows;
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+}
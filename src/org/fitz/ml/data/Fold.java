@@ -0,0 +1,119 @@
+package org.fitz.ml.data;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * This class is an immutable view of one fold of a k-fold cross validation.
+ * A fold does not copy any examples: it is a slice [from, to) of an order of the example indexes
+ * (shared by all folds) that selects the validation examples; the other indexes are the training examples.
+ * The examples themselves are read through index arrays or list views over the original list.
+ */
+public class Fold {
+    private final int index;
+    private final int order[]; //shared, never modified
+    private final int from;
+    private final int to;
+
+    Fold(int index, int order[], int from, int to){
+        this.index = index;
+        this.order = order;
+        this.from = from;
+        this.to = to;
+    }
+
+    public int getIndex(){
+        return index;
+    }
+
+    public int getValidationSize(){
+        return to - from;
+    }
+
+    public int getTrainingSize(){
+        return order.length - (to - from);
+    }
+
+    /**
+     * This method returns the position of the i-th validation example
+     * @param i the index within the validation examples
+     * @return the index of the example in the dataset
+     */
+    public int getValidationRow(int i){
+        return order[from + i];
+    }
+
+    /**
+     * This method returns the position of the i-th training example
+     * @param i the index within the training examples
+     * @return the index of the example in the dataset
+     */
+    public int getTrainingRow(int i){
+        return (i < from) ? order[i] : order[i + (to - from)];
+    }
+
+    /**
+     * This method returns the indexes of the validation examples (e.g. for Learner.ID3 on an encoded dataset)
+     * @return a new array of row indexes
+     */
+    public int[] getValidationRows(){
+        int rows[] = new int[getValidationSize()];
+        System.arraycopy(order, from, rows, 0, rows.length);
+        return rows;
+    }
+
+    /**
+     * This method returns the indexes of the training examples
+     * @return a new array of row indexes
+     */
+    public int[] getTrainingRows(){
+        int rows[] = new int[getTrainingSize()];
+        System.arraycopy(order, 0, rows, 0, from);
+        System.arraycopy(order, to, rows, from, order.length - to);
+        return rows;
+    }
+
+    /**
+     * This method returns a read-only view of the validation examples of a list
+     * @param examples all examples (in dataset order)
+     * @return the validation examples
+     */
+    public <T> List<T> validation(List<T> examples){
+        return new View<T>(examples, true);
+    }
+
+    /**
+     * This method returns a read-only view of the training examples of a list
+     * @param examples all examples (in dataset order)
+     * @return the training examples
+     */
+    public <T> List<T> training(List<T> examples){
+        return new View<T>(examples, false);
+    }
+
+    /**
+     * This class maps the positions of a fold to the examples of the original list
+     */
+    private class View<T> extends AbstractList<T> implements RandomAccess {
+        private List<T> examples;
+        private boolean isValidation;
+
+        View(List<T> examples, boolean isValidation){
+            this.examples = examples;
+            this.isValidation = isValidation;
+        }
+
+        @Override
+        public T get(int i){
+            if (i < 0 || i >= size())
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+            return examples.get(isValidation ? getValidationRow(i) : getTrainingRow(i));
+        }
+
+        @Override
+        public int size(){
+            return isValidation ? getValidationSize() : getTrainingSize();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.fitz.ml.data;
+
+/**
+ * This interface is implemented by learners that can be cross validated.
+ * learn is called concurrently for different folds, so an implementation must not
+ * modify the shared examples and must keep the state of each fold separate.
+ */
+public interface FoldLearner {
+
+    /**
+     * This method trains a model on the training examples of a fold and evaluates it on the validation examples
+     * @param fold the fold
+     * @return the metrics of the fold
+     */
+    FoldResult learn(Fold fold);
+}
@@ -0,0 +1,90 @@
+package org.fitz.ml.data;
+
+/**
+ * This class holds the metrics of one fold of a cross validation
+ */
+public class FoldResult {
+    private int fold;
+    private int trainingSize;
+    private int validationSize;
+    private double accuracy = Double.NaN;   //percentage of validation examples classified correctly
+    private double error = Double.NaN;      //error on the validation examples (e.g. MSE for backprop)
+    private int optimalIterations = -1;     //iterations with the smallest validation error (-1 if not applicable)
+    private int iterations = -1;            //iterations actually run, e.g. when training stopped early (-1 if not applicable)
+    private long trainingTime = 0;          //milliseconds
+
+    public FoldResult(Fold fold){
+        this.fold = fold.getIndex();
+        this.trainingSize = fold.getTrainingSize();
+        this.validationSize = fold.getValidationSize();
+    }
+
+    public int getFold() {
+        return fold;
+    }
+
+    public int getTrainingSize() {
+        return trainingSize;
+    }
+
+    public int getValidationSize() {
+        return validationSize;
+    }
+
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    public void setAccuracy(double accuracy) {
+        this.accuracy = accuracy;
+    }
+
+    public double getError() {
+        return error;
+    }
+
+    public void setError(double error) {
+        this.error = error;
+    }
+
+    public int getOptimalIterations() {
+        return optimalIterations;
+    }
+
+    public void setOptimalIterations(int optimalIterations) {
+        this.optimalIterations = optimalIterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public long getTrainingTime() {
+        return trainingTime;
+    }
+
+    public void setTrainingTime(long trainingTime) {
+        this.trainingTime = trainingTime;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Fold ").append(fold + 1).append(": ")
+          .append(trainingSize).append(" training / ").append(validationSize).append(" validation example(s)");
+        if (!Double.isNaN(accuracy))
+            sb.append(String.format(", accuracy %.2f%%", accuracy));
+        if (!Double.isNaN(error))
+            sb.append(String.format(", error %.6f", error));
+        if (optimalIterations >= 0)
+            sb.append(", optimal iterations ").append(optimalIterations);
+        if (iterations >= 0)
+            sb.append(" of ").append(iterations);
+        sb.append(String.format(" (%.2fs)", trainingTime / 1000.0));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,277 @@
+package org.fitz.ml.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * This class reads a dataset file through read-only memory mappings of its bytes.
+ * The file can be split at line boundaries into ranges that are scanned by different threads (see split),
+ * and the values of a row are read straight from the mapped bytes: numbers are parsed into doubles and
+ * other values are compared and hashed as byte slices, so no String is created for a row.
+ * Values are separated by spaces or tabs, rows by new lines, and the file is expected to be ASCII or UTF-8.
+ */
+public class MappedDataFile implements Closeable {
+    private static final int MAX_MAPPING = Integer.MAX_VALUE - 1024; //a mapping holds at most 2GB
+    private static final double POWERS_OF_TEN[] = new double[23];   //10^0 .. 10^22 are exact doubles
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long size;
+
+    /**
+     * @param filename the dataset file
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedDataFile(String filename) throws IOException {
+        file = new RandomAccessFile(filename, "r");
+        channel = file.getChannel();
+        size = channel.size();
+    }
+
+    /**
+     * This method splits the file into ranges that start at the beginning of a line.
+     * More ranges than requested are returned if a range would be larger than a mapping can be.
+     * @param parts the number of ranges wanted
+     * @return the start of each range followed by the end of the file (ranges may be empty)
+     * @throws IOException if the file cannot be read
+     */
+    public long[] split(int parts) throws IOException {
+        parts = (int) Math.max(Math.max(1, parts), (size + MAX_MAPPING - 1) / MAX_MAPPING);
+        long bounds[] = new long[parts + 1];
+        for (int p = 1; p < parts; p++)
+            bounds[p] = Math.max(bounds[p - 1], nextLine(size * p / parts));
+        bounds[parts] = size;
+        return bounds;
+    }
+
+    /**
+     * This method finds the start of the first line at or after a position
+     * (the position itself if it is the start of a line)
+     */
+    private long nextLine(long position) throws IOException {
+        if (position == 0)
+            return 0;
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        position--; //the previous byte tells if the position starts a line
+        while (position < size) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n <= 0)
+                break;
+            for (int i = 0; i < n; i++)
+                if (buffer.get(i) == '\n')
+                    return position + i + 1;
+            position += n;
+        }
+        return size;
+    }
+
+    /**
+     * This method maps a range of the file
+     * @param from the start of the range (the start of a line)
+     * @param to the end of the range (the start of a line or the end of the file)
+     * @return the rows of the range
+     * @throws IOException if the range cannot be mapped
+     */
+    public Rows rows(long from, long to) throws IOException {
+        if (to - from > MAX_MAPPING)
+            throw new IOException("range of " + (to - from) + " bytes is too large to map");
+        return new Rows(channel.map(FileChannel.MapMode.READ_ONLY, from, to - from));
+    }
+
+    public long size(){
+        return size;
+    }
+
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * This method computes the hash of a value the same way as Rows.hash
+     * @param value the bytes of the value
+     * @return the hash
+     */
+    public static int hash(byte value[]){
+        int h = 0x811C9DC5; //FNV-1a
+        for (byte b : value)
+            h = (h ^ (b & 0xFF)) * 0x01000193;
+        return h;
+    }
+
+    /**
+     * This method converts a value to the bytes it has in a dataset file
+     */
+    public static byte[] getBytes(String value){
+        return value.getBytes(Charset.forName("UTF-8"));
+    }
+
+    /**
+     * This class scans the rows of a mapped range, one row at a time
+     */
+    public static class Rows {
+        private ByteBuffer bytes;
+        private int position = 0;
+        private int limit;
+        private int starts[] = new int[16]; //start of each value of the current row
+        private int ends[] = new int[16];   //end of each value of the current row
+        private int count = 0;
+
+        Rows(ByteBuffer bytes){
+            this.bytes = bytes;
+            this.limit = bytes.limit();
+        }
+
+        /**
+         * This method moves to the next row that has at least one value
+         * @return false at the end of the range
+         */
+        public boolean next(){
+            count = 0;
+            while (count == 0 && position < limit) {
+                int start = -1;
+                for (; position < limit; position++) {
+                    byte b = bytes.get(position);
+                    if (b == '\n' || b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B) {
+                        if (start >= 0) {
+                            add(start, position);
+                            start = -1;
+                        }
+                        if (b == '\n') {
+                            position++;
+                            break;
+                        }
+                    } else if (start < 0)
+                        start = position;
+                }
+                if (start >= 0) //last line without a new line
+                    add(start, position);
+            }
+            return count > 0;
+        }
+
+        private void add(int start, int end){
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count++] = end;
+        }
+
+        /**
+         * @return the number of bytes of the range read so far
+         */
+        public int position(){
+            return position;
+        }
+
+        /**
+         * @return the number of bytes of the range
+         */
+        public int length(){
+            return limit;
+        }
+
+        /**
+         * @return the number of values of the current row
+         */
+        public int size(){
+            return count;
+        }
+
+        /**
+         * This method parses a value of the current row as a number. Decimal numbers with at most
+         * 15 significant digits are computed from their digits (as exactly as Double.parseDouble);
+         * other numbers are parsed by Double.parseDouble
+         * @param field the index of the value in the row
+         * @return the number
+         * @throws NumberFormatException if the value is not a number
+         */
+        public double getDouble(int field){
+            int i = starts[field];
+            int end = ends[field];
+            boolean negative = false;
+            if (i < end && (bytes.get(i) == '-' || bytes.get(i) == '+')) {
+                negative = bytes.get(i) == '-';
+                i++;
+            }
+
+            long mantissa = 0;
+            boolean hasDigits = false;
+            int digits = 0;  //significant digits
+            int decimals = -1; //digits after the point (-1 before the point)
+            for (; i < end; i++) {
+                byte b = bytes.get(i);
+                if (b >= '0' && b <= '9') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    hasDigits = true;
+                    if (mantissa != 0)
+                        digits++;
+                    if (decimals >= 0)
+                        decimals++;
+                } else if (b == '.' && decimals < 0)
+                    decimals = 0;
+                else
+                    break;
+            }
+
+            //m and 10^k are exact doubles below 2^53 and 10^22, so m / 10^k is rounded once, like parseDouble
+            if (i < end || !hasDigits || digits > 15 || decimals >= POWERS_OF_TEN.length)
+                return Double.parseDouble(getString(field));
+            double value = (decimals > 0) ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+            return negative ? -value : value;
+        }
+
+        /**
+         * This method computes the hash of a value of the current row (see MappedDataFile.hash)
+         * @param field the index of the value in the row
+         * @return the hash
+         */
+        public int hash(int field){
+            int h = 0x811C9DC5;
+            for (int i = starts[field]; i < ends[field]; i++)
+                h = (h ^ (bytes.get(i) & 0xFF)) * 0x01000193;
+            return h;
+        }
+
+        /**
+         * This method compares a value of the current row with the bytes of a value
+         * @param field the index of the value in the row
+         * @param value the bytes to compare with
+         * @return true if the bytes are the same
+         */
+        public boolean equals(int field, byte value[]){
+            int start = starts[field];
+            if (ends[field] - start != value.length)
+                return false;
+            for (int i = 0; i < value.length; i++)
+                if (bytes.get(start + i) != value[i])
+                    return false;
+            return true;
+        }
+
+        /**
+         * This method creates a String of a value of the current row (for values that cannot be read from the bytes)
+         * @param field the index of the value in the row
+         * @return the value
+         */
+        public String getString(int field){
+            byte value[] = new byte[ends[field] - starts[field]];
+            for (int i = 0; i < value.length; i++)
+                value[i] = bytes.get(starts[field] + i);
+            return new String(value, Charset.forName("UTF-8"));
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.fitz.ml.dtree;
 
 import org.fitz.ml.Attribute;
 import org.fitz.ml.Attributes;
+import org.fitz.ml.data.Dataset;
 import org.fitz.util.Util;
 
 import java.util.ArrayList;
@@ -34,9 +35,6 @@ public class Classifier {
         int targetIndex = attributes.getTargetIndex();
         String hline = new String(new char[(maxLen * ((attributes.size() + 1))-datasetLabel.length())/2]).replace("\0", "=");
         String classification="-----";
-        String totalClassStr = "TOTAL CLASSIFIED: ";
-        String accuracyStr = "ACCURACY (%):   ";
-        int lineLen;
         System.out.print("\n\n" +hline);
         System.out.print(datasetLabel);
         System.out.print(hline +"\n");
@@ -68,9 +66,65 @@ public class Classifier {
             }
         }
 
+        printSummary(totalCorrect, totalExamples, notMatched);
+    }
+
+    /**
+     * This method classifies an encoded dataset while printing each instance
+     * as well as its classification in tabular form.
+     * The rules are compiled into a flat table of column indexes and value codes once,
+     * so matching an instance only compares ints.
+     * @param instances the encoded dataset to classify
+     * @param rules the rules to use to classify the data
+     * @param datasetLabel a label specifying the name of the dataset (eg. TEST SET)
+     */
+    public void classify(Dataset instances, ArrayList<Rule> rules, String datasetLabel){
+
+        Double totalExamples = (double) instances.size();
+        Double totalCorrect = 0.0;
+        int notMatched = 0;
+        CompiledRules compiledRules = new CompiledRules(rules, attributes);
+        String hline = new String(new char[(maxLen * ((attributes.size() + 1))-datasetLabel.length())/2]).replace("\0", "=");
+        String classification;
+        System.out.print("\n\n" +hline);
+        System.out.print(datasetLabel);
+        System.out.print(hline +"\n");
+
+        printClassificationHeader(attributes); //print a table header
+
+        for (int row = 0; row < instances.size(); row++) {
+            classification = "-----";
+            int rule = compiledRules.match(instances, row);
+            if (rule >= 0) {
+                classification = rules.get(rule).getConsequent();
+                totalCorrect++;
+            }
+            else
+                notMatched++;
+
+            printInstance(instances.getRow(row), maxLen);
+            if (maxLen > classification.length())
+                padding = new String(new char[maxLen - classification.length()]).replace("\0", " ");
+            System.out.print(classification + padding +"\n");
+        }
+
+        printSummary(totalCorrect, totalExamples, notMatched);
+    }
+
+    /**
+     * This method prints the accuracy and the number of unclassified instances after a classification
+     * @param totalCorrect the number of instances classified correctly
+     * @param totalExamples the number of instances
+     * @param notMatched the number of instances no rule could be applied to
+     */
+    private void printSummary(Double totalCorrect, Double totalExamples, int notMatched){
+        String totalClassStr = "TOTAL CLASSIFIED: ";
+        String accuracyStr = "ACCURACY (%):   ";
+        int lineLen;
+
         //print accuracy and formatting data
 
-        hline = new String(new char[maxLen * (attributes.size() + 1)]).replace("\0", "_");
+        String hline = new String(new char[maxLen * (attributes.size() + 1)]).replace("\0", "_");
         System.out.println(hline);
 
         System.out.print(totalClassStr);
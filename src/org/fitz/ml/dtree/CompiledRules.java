@@ -0,0 +1,161 @@
+package org.fitz.ml.dtree;
+
+import org.fitz.ml.Attributes;
+import org.fitz.ml.data.Dataset;
+
+import java.util.ArrayList;
+
+/**
+ * This class is a compiled form of a list of rules (for example after post-pruning, when the rules
+ * no longer correspond to the paths of the tree). The statements of all rules are resolved once
+ * to columns and value codes and stored in flat arrays, so matching an instance compares ints
+ * without name lookups or allocations. As with the rule list, the first matching rule wins.
+ */
+public class CompiledRules {
+    private static final int NEVER = Integer.MIN_VALUE; //value code of a statement that cannot match
+
+    private int ruleStart[];   //the statements of rule i are at positions ruleStart[i] .. ruleStart[i+1]-1
+    private int columns[];     //column of each statement
+    private int valueCodes[];  //value code of each statement
+    private int consequents[]; //class code of the consequent of each rule
+    private String targetValues[];
+
+    /**
+     * This constructor compiles a list of rules
+     * @param rules the rules in the order they are tried
+     * @param attributes the attributes used to resolve the statements
+     */
+    public CompiledRules(ArrayList<Rule> rules, Attributes attributes){
+        int numStatements = 0;
+        for (Rule rule : rules)
+            numStatements += rule.getAntecedent().size();
+
+        ruleStart = new int[rules.size() + 1];
+        columns = new int[numStatements];
+        valueCodes = new int[numStatements];
+        consequents = new int[rules.size()];
+        targetValues = attributes.getTargetAttribute().getValues();
+
+        int position = 0;
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            int ruleColumns[] = rule.getColumnIndexes(attributes);
+            int ruleValueCodes[] = rule.getValueCodes(attributes);
+            ruleStart[i] = position;
+            for (int j = 0; j < ruleColumns.length; j++) {
+                if (ruleColumns[j] >= 0) { //statements on unknown attributes are ignored as in Rule.isMatched
+                    columns[position] = ruleColumns[j];
+                    valueCodes[position] = (ruleValueCodes[j] == Dataset.UNKNOWN) ? NEVER : ruleValueCodes[j];
+                    position++;
+                }
+            }
+            consequents[i] = indexOfTarget(rule.getConsequent());
+        }
+        ruleStart[rules.size()] = position;
+    }
+
+    /**
+     * This method finds the first rule whose preconditions match an instance
+     * @param row the value code of each attribute of the instance
+     * @return the index of the rule or -1 if no rule matches
+     */
+    public int match(int row[]){
+        for (int i = 0; i < consequents.length; i++)
+            if (isMatched(i, row))
+                return i;
+        return -1;
+    }
+
+    /**
+     * This method finds the first rule whose preconditions match an instance and whose consequent
+     * is the target of the instance (the way Rule.isMatched matches a rule)
+     * @param row the value code of each attribute of the instance
+     * @param targetCode the class code of the target of the instance
+     * @return the index of the rule or -1 if no rule matches
+     */
+    public int match(int row[], int targetCode){
+        if (targetCode == Dataset.UNKNOWN)
+            return -1;
+        for (int i = 0; i < consequents.length; i++)
+            if (consequents[i] == targetCode && isMatched(i, row))
+                return i;
+        return -1;
+    }
+
+    /**
+     * This method finds the first rule whose preconditions match a row of an encoded dataset
+     * and whose consequent is the target of the row (the way Rule.isMatched matches a rule)
+     * @param dataset the encoded dataset
+     * @param row the index of the row
+     * @return the index of the rule or -1 if no rule matches
+     */
+    public int match(Dataset dataset, int row){
+        int targetCode = dataset.getTargetCodes()[row];
+        if (targetCode == Dataset.UNKNOWN)
+            return -1;
+        for (int i = 0; i < consequents.length; i++)
+            if (consequents[i] == targetCode && isMatched(i, dataset, row))
+                return i;
+        return -1;
+    }
+
+    /**
+     * This method classifies an instance with the first rule whose preconditions match it
+     * @param row the value code of each attribute of the instance
+     * @return the class code of the consequent or UNKNOWN if no rule matches
+     */
+    public int classify(int row[]){
+        int rule = match(row);
+        return (rule >= 0) ? consequents[rule] : Dataset.UNKNOWN;
+    }
+
+    /**
+     * This method classifies a batch of instances
+     * @param rows the value codes of each instance
+     * @return the class code of each instance
+     */
+    public int[] classify(int rows[][]){
+        int classifications[] = new int[rows.length];
+        for (int i = 0; i < rows.length; i++)
+            classifications[i] = classify(rows[i]);
+        return classifications;
+    }
+
+    /**
+     * This method converts a class code back to the target value
+     * @param classCode the class code
+     * @return the target value or null if the code is UNKNOWN
+     */
+    public String getLabel(int classCode){
+        return (classCode >= 0 && classCode < targetValues.length) ? targetValues[classCode] : null;
+    }
+
+    public int getConsequent(int rule){
+        return consequents[rule];
+    }
+
+    public int size(){
+        return consequents.length;
+    }
+
+    private boolean isMatched(int rule, int row[]){
+        for (int s = ruleStart[rule]; s < ruleStart[rule + 1]; s++)
+            if (row[columns[s]] != valueCodes[s])
+                return false;
+        return true;
+    }
+
+    private boolean isMatched(int rule, Dataset dataset, int row){
+        for (int s = ruleStart[rule]; s < ruleStart[rule + 1]; s++)
+            if (dataset.getCode(row, columns[s]) != valueCodes[s])
+                return false;
+        return true;
+    }
+
+    private int indexOfTarget(String label){
+        for (int i = 0; i < targetValues.length; i++)
+            if (targetValues[i].equals(label))
+                return i;
+        return Dataset.UNKNOWN;
+    }
+}
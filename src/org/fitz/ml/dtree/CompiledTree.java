@@ -0,0 +1,196 @@
+package org.fitz.ml.dtree;
+
+import org.fitz.ml.Attribute;
+import org.fitz.ml.Attributes;
+import org.fitz.ml.data.Dataset;
+
+import java.util.ArrayList;
+
+/**
+ * This class is a compiled form of a decision tree used for fast classification.
+ * The nodes are numbered in pre-order and stored in flat arrays: the column tested by each node,
+ * the position of its children in a shared child table (one slot per value code of the attribute)
+ * and the class code of each leaf. Classifying an instance follows a single path from the root,
+ * comparing value codes, without allocating anything.
+ */
+public class CompiledTree {
+    public static final int NO_CHILD = -1;
+
+    private int columns[];    //column tested by each node (-1 for leaves)
+    private int firstChild[]; //position of the children of each node in the child table
+    private int numValues[];  //number of values of the attribute tested by each node
+    private int children[];   //child node for each value code of each node
+    private int classCodes[]; //class code of each leaf (UNKNOWN for inner nodes)
+    private String targetValues[];
+    private int numNodes = 0;
+    private int numChildren = 0;
+
+    /**
+     * This constructor compiles a tree
+     * @param root the root of the tree
+     * @param attributes the attributes used to resolve the node labels to columns
+     */
+    public CompiledTree(Node root, Attributes attributes){
+        int capacity = countNodes(root);
+        columns = new int[capacity];
+        firstChild = new int[capacity];
+        numValues = new int[capacity];
+        classCodes = new int[capacity];
+        children = new int[countChildSlots(root, attributes)];
+        targetValues = attributes.getTargetAttribute().getValues();
+
+        compile(root, attributes);
+    }
+
+    /**
+     * This method adds a node and its subtree to the arrays
+     * @param node the node to add
+     * @param attributes the attributes used to resolve the node labels to columns
+     * @return the number of the node
+     */
+    private int compile(Node node, Attributes attributes){
+        int n = numNodes++;
+        int column = getColumn(node, attributes);
+        columns[n] = column;
+        classCodes[n] = Dataset.UNKNOWN;
+
+        if (column < 0) { //leaf
+            classCodes[n] = indexOfTarget(node.getLabel());
+            return n;
+        }
+
+        Attribute attribute = attributes.get(column);
+        numValues[n] = attribute.getValues().length;
+        firstChild[n] = numChildren;
+        numChildren += numValues[n];
+        for (int i = 0; i < numValues[n]; i++)
+            children[firstChild[n] + i] = NO_CHILD;
+
+        for (Branch branch : node.getBranches()) {
+            int code = Dataset.indexOfValue(attribute, branch.getLabel());
+            ArrayList<Node> branchNodes = branch.getNodes();
+            if (code != Dataset.UNKNOWN && branchNodes.size() > 0 && children[firstChild[n] + code] == NO_CHILD)
+                children[firstChild[n] + code] = compile(branchNodes.get(0), attributes);
+        }
+
+        return n;
+    }
+
+    /**
+     * This method classifies an instance
+     * @param row the value code of each attribute of the instance
+     * @return the class code (index in the target values) or UNKNOWN if the tree has no branch for the instance
+     */
+    public int classify(int row[]){
+        int n = 0;
+        while (columns[n] >= 0) {
+            int code = row[columns[n]];
+            if (code < 0 || code >= numValues[n])
+                return Dataset.UNKNOWN;
+            n = children[firstChild[n] + code];
+            if (n == NO_CHILD)
+                return Dataset.UNKNOWN;
+        }
+        return classCodes[n];
+    }
+
+    /**
+     * This method classifies a row of an encoded dataset
+     * @param dataset the encoded dataset
+     * @param row the index of the row
+     * @return the class code (index in the target values) or UNKNOWN if the tree has no branch for the row
+     */
+    public int classify(Dataset dataset, int row){
+        int n = 0;
+        while (columns[n] >= 0) {
+            int code = dataset.getCode(row, columns[n]);
+            if (code < 0 || code >= numValues[n])
+                return Dataset.UNKNOWN;
+            n = children[firstChild[n] + code];
+            if (n == NO_CHILD)
+                return Dataset.UNKNOWN;
+        }
+        return classCodes[n];
+    }
+
+    /**
+     * This method classifies a batch of instances
+     * @param rows the value codes of each instance
+     * @return the class code of each instance
+     */
+    public int[] classify(int rows[][]){
+        int classifications[] = new int[rows.length];
+        for (int i = 0; i < rows.length; i++)
+            classifications[i] = classify(rows[i]);
+        return classifications;
+    }
+
+    /**
+     * This method classifies all rows of an encoded dataset
+     * @param dataset the encoded dataset
+     * @return the class code of each row
+     */
+    public int[] classify(Dataset dataset){
+        int classifications[] = new int[dataset.size()];
+        for (int row = 0; row < classifications.length; row++)
+            classifications[row] = classify(dataset, row);
+        return classifications;
+    }
+
+    /**
+     * This method converts a class code back to the target value
+     * @param classCode the class code
+     * @return the target value or null if the code is UNKNOWN
+     */
+    public String getLabel(int classCode){
+        return (classCode >= 0 && classCode < targetValues.length) ? targetValues[classCode] : null;
+    }
+
+    public int size(){
+        return numNodes;
+    }
+
+    /**
+     * This method finds the column tested by a node from its label (the name of the decision attribute)
+     * @param node the node
+     * @param attributes the attributes
+     * @return the column or -1 if the node is a leaf
+     */
+    private static int getColumn(Node node, Attributes attributes){
+        if (node.isLeaf())
+            return -1;
+
+        ArrayList<Attribute> attributeList = attributes.getAttributes();
+        for (int i = 0; i < attributeList.size(); i++)
+            if (attributeList.get(i).getName().equals(node.getLabel()))
+                return i;
+        return -1;
+    }
+
+    private int indexOfTarget(String label){
+        for (int i = 0; i < targetValues.length; i++)
+            if (targetValues[i].equals(label))
+                return i;
+        return Dataset.UNKNOWN;
+    }
+
+    private static int countNodes(Node node){
+        int count = 1;
+        for (Branch branch : node.getBranches())
+            if (branch.getNodes().size() > 0)
+                count += countNodes(branch.getNodes().get(0));
+        return count;
+    }
+
+    private static int countChildSlots(Node node, Attributes attributes){
+        int column = getColumn(node, attributes);
+        if (column < 0)
+            return 0;
+
+        int count = attributes.get(column).getValues().length;
+        for (Branch branch : node.getBranches())
+            if (branch.getNodes().size() > 0)
+                count += countChildSlots(branch.getNodes().get(0), attributes);
+        return count;
+    }
+}
@@ -0,0 +1,48 @@
+package org.fitz.ml.dtree;
+
+import org.fitz.ml.Attributes;
+import org.fitz.ml.data.Dataset;
+import org.fitz.ml.data.Fold;
+import org.fitz.ml.data.FoldLearner;
+import org.fitz.ml.data.FoldResult;
+
+/**
+ * This class cross validates the ID3 algorithm on an encoded dataset.
+ * Each fold grows a tree from the row indexes of its training examples (the dataset is shared, not copied)
+ * and reports the accuracy of the compiled tree on the validation rows.
+ */
+public class DTreeFoldLearner implements FoldLearner {
+    private Dataset dataset;
+    private Attributes attributes;
+
+    /**
+     * @param dataset the encoded examples (not modified)
+     * @param attributes the attributes (including the target attribute)
+     */
+    public DTreeFoldLearner(Dataset dataset, Attributes attributes) {
+        this.dataset = dataset;
+        this.attributes = attributes;
+    }
+
+    @Override
+    public FoldResult learn(Fold fold) {
+        Learner learner = new Learner();
+        learner.setAttributes(attributes);
+        Tree tree = learner.getTree();
+        tree.setRoot(learner.ID3(dataset, fold.getTrainingRows(), attributes.getTargetAttribute(), attributes.getOtherAttributes()));
+        tree.deriveRules();
+
+        CompiledTree compiledTree = tree.compile(attributes);
+        int targetCodes[] = dataset.getTargetCodes();
+        double totalCorrect = 0;
+        for (int i = 0; i < fold.getValidationSize(); i++) {
+            int row = fold.getValidationRow(i);
+            if (targetCodes[row] != Dataset.UNKNOWN && compiledTree.classify(dataset, row) == targetCodes[row])
+                totalCorrect++;
+        }
+
+        FoldResult result = new FoldResult(fold);
+        result.setAccuracy((fold.getValidationSize() > 0) ? (totalCorrect / fold.getValidationSize()) * 100.0 : 0);
+        return result;
+    }
+}
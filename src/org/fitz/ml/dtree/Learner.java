@@ -3,12 +3,19 @@ package org.fitz.ml.dtree;
 import org.fitz.ml.Attribute;
 import org.fitz.ml.AttributeType;
 import org.fitz.ml.Attributes;
+import org.fitz.ml.constants.DtreeConstants;
+import org.fitz.ml.data.Dataset;
 import org.fitz.util.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 /** This class provides functionalities for running the ID3 algorithm
  * Created by FitzRoi on 2/13/16.
@@ -16,6 +23,10 @@ import java.util.Map;
 public class Learner {
     private Tree dTree;
     private Attributes attributes;
+    private ForkJoinPool pool; //pool used to search for the best split (null = sequential)
+    private int parallelSplitMinRows = DtreeConstants.PARALLEL_SPLIT_MIN_ROWS;
+    private int parallelSubtreeMinRows = DtreeConstants.PARALLEL_SUBTREE_MIN_ROWS;
+    private int parallelSubtreeMaxDepth = DtreeConstants.PARALLEL_SUBTREE_MAX_DEPTH;
 
     public Learner(){
         dTree = new Tree();
@@ -24,6 +35,40 @@ public class Learner {
 
     public void setAttributes(Attributes attributes){this.attributes = attributes;}
 
+    /**
+     * This method sets the number of threads used to evaluate candidate attributes
+     * and build subtrees when learning from an encoded dataset
+     * @param parallelism the number of threads (1 or less = sequential)
+     */
+    public void setParallelism(int parallelism){
+        if (pool != null)
+            pool.shutdown();
+        pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
+    }
+
+    public int getParallelism(){
+        return (pool != null) ? pool.getParallelism() : 1;
+    }
+
+    /**
+     * This method sets the minimum number of examples at a node before
+     * the candidate attributes are evaluated in parallel
+     * @param parallelSplitMinRows the row-count threshold
+     */
+    public void setParallelSplitMinRows(int parallelSplitMinRows){
+        this.parallelSplitMinRows = parallelSplitMinRows;
+    }
+
+    /**
+     * This method sets the cutoff below which subtrees are built sequentially
+     * @param parallelSubtreeMinRows the minimum number of examples in a branch for a separate task
+     * @param parallelSubtreeMaxDepth the depth from which subtrees are always built sequentially
+     */
+    public void setParallelSubtreeCutoff(int parallelSubtreeMinRows, int parallelSubtreeMaxDepth){
+        this.parallelSubtreeMinRows = parallelSubtreeMinRows;
+        this.parallelSubtreeMaxDepth = parallelSubtreeMaxDepth;
+    }
+
     public void setTargetAttribute(int targetAttribute) {
         this.attributes.setTargetAttribute(targetAttribute);
     }
@@ -96,6 +141,188 @@ public class Learner {
         return root;
     }
 
+    /**
+     * This method runs the recursive ID3 algorithm on an encoded dataset
+     * @param examples the encoded dataset
+     * @param targetAttribute the target attribute
+     * @param otherAttributes attributes except the target concept
+     * @return a root node to a tree
+     */
+    public Node ID3(Dataset examples, Attribute targetAttribute, Attributes otherAttributes) {
+        return ID3(examples, examples.getRowIndexes(), targetAttribute, otherAttributes);
+    }
+
+    /**
+     * This method runs the recursive ID3 algorithm on a subset of an encoded dataset.
+     * It compares value codes instead of Strings but otherwise follows the steps above.
+     * Instead of copying the examples of each branch, the row indexes are copied once into a buffer
+     * which is partitioned in place by the value of the decision attribute at each node,
+     * and the attributes that are still available are tracked in a BitSet.
+     * If a parallelism greater than 1 is set, large subtrees are built as tasks on a ForkJoinPool.
+     * @param examples the encoded dataset
+     * @param rows the indexes of the rows to learn from
+     * @param targetAttribute the target attribute
+     * @param otherAttributes attributes except the target concept
+     * @return a root node to a tree or subtree
+     */
+    public Node ID3(Dataset examples, int rows[], Attribute targetAttribute, Attributes otherAttributes) {
+        int buffer[] = Arrays.copyOf(rows, rows.length); //the caller's rows are not reordered
+        ArrayList<Attribute> candidates = otherAttributes.getAttributes();
+        BitSet available = new BitSet(candidates.size());
+        available.set(0, candidates.size());
+
+        if (pool != null && !(ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool))
+            return pool.invoke(new ID3Task(examples, buffer, 0, buffer.length, targetAttribute, candidates, available, 0, null));
+
+        return ID3(examples, buffer, 0, buffer.length, targetAttribute, candidates, available, 0);
+    }
+
+    /**
+     * This method runs the recursive ID3 algorithm on the rows rows[from .. to-1] of an encoded dataset.
+     * The range is partitioned in place into one range per value of the decision attribute,
+     * and each subtree works on its own range of the buffer.
+     * Subtrees of branches with enough examples (above the cutoff depth) are forked as tasks
+     * and joined in the order of the branches so the tree is the same as the sequential one.
+     * @param examples the encoded dataset
+     * @param rows the buffer of row indexes
+     * @param from the position of the first row in the buffer
+     * @param to the position after the last row in the buffer
+     * @param targetAttribute the target attribute
+     * @param candidates attributes except the target concept
+     * @param available the positions of the candidates that have not been used on the path to this node
+     * @param depth the depth of the node in the tree
+     * @return a root node to a tree or subtree
+     */
+    private Node ID3(Dataset examples, int rows[], int from, int to, Attribute targetAttribute,
+                     ArrayList<Attribute> candidates, BitSet available, int depth) {
+        Node root = new Node();
+
+        //check if all examples belong to the same class (positive, negative, etc)
+        if (sameClass(examples, rows, from, to, targetAttribute)) {
+            int targetIndex = attributes.getTargetIndex();
+
+            if (targetIndex >= 0) {
+                String nodeLabel = examples.getString(rows[from], targetIndex); //use the class of the first example as label
+                root.setLabel(nodeLabel);
+            }
+            return root;
+        }
+
+        //if attributes empty
+        if (attributes.size() == 0) {
+            String nodeLabel = getMostCommonValue(examples, rows, from, to, targetAttribute);
+            root.setLabel(nodeLabel);
+            return root;
+        }
+
+        //use information gain to determine best attribute from a list of attributes
+        Attribute A = Compute.getBestAttribute(examples, rows, from, to, targetAttribute, candidates, available, pool, parallelSplitMinRows);
+
+        //information gain = 0, go no further
+        if (A == null) {
+            String nodeLabel = getMostCommonValue(examples, rows, from, to, targetAttribute);
+            root.setLabel(nodeLabel);
+            return root;
+        }
+
+        root.setLabel(A.getName()); //label root with decision attribute
+        root.setAttribute(A); //set the decision attribute for root
+
+        //group the examples by the value of A; examples of value vi are in rows[starts[vi] .. starts[vi+1]-1]
+        String values[] = A.getValues();
+        int starts[] = partition(examples, rows, from, to, A);
+
+        //the label of empty branches is computed before any subtree reorders its part of the buffer
+        String mostCommonValue = null;
+        for (int vi = 0; vi < values.length && mostCommonValue == null; vi++)
+            if (starts[vi] == starts[vi + 1])
+                mostCommonValue = getMostCommonValue(examples, rows, from, to, targetAttribute);
+
+        //[Attributes - {A}] is shared by all branches
+        BitSet availableMinusA = (BitSet) available.clone();
+        availableMinusA.clear(candidates.indexOf(A));
+
+        ArrayList<ID3Task> subtasks = new ArrayList<ID3Task>();
+        for (int vi = 0; vi < values.length; vi++) { //for each possible vi of A
+            Branch branch = new Branch(values[vi]);
+            root.addBranch(branch);
+
+            //examples where the attribute A is equal to vi
+            int fromVi = starts[vi];
+            int toVi = starts[vi + 1];
+
+            if (fromVi == toVi) {
+                branch.addChild(new Node(mostCommonValue, branch.getLabel())); // add a leaf node with most common target value
+            } else {
+                if (isParallelSubtree(toVi - fromVi, depth + 1)) {
+                    ID3Task subtask = new ID3Task(examples, rows, fromVi, toVi, targetAttribute, candidates, availableMinusA, depth + 1, branch);
+                    subtask.fork(); //the subtree is added to the branch once joined
+                    subtasks.add(subtask);
+                } else {
+                    Node subTree = ID3(examples, rows, fromVi, toVi, targetAttribute, candidates, availableMinusA, depth + 1);
+                    subTree.setParentLabel(branch.getLabel());
+                    branch.addChild(subTree);
+                }
+            }
+
+        }
+
+        //each branch has its own child so joining in order gives the same tree as the sequential algorithm
+        for (ID3Task subtask : subtasks) {
+            Node subTree = subtask.join();
+            subTree.setParentLabel(subtask.branch.getLabel());
+            subtask.branch.addChild(subTree);
+        }
+
+        return root;
+    }
+
+    /**
+     * This method checks if the subtree of a branch should be built as a separate task
+     * @param numRows the number of examples in the branch
+     * @param depth the depth of the subtree
+     * @return true if the subtree is large enough and we are running in the pool, false otherwise
+     */
+    private boolean isParallelSubtree(int numRows, int depth) {
+        return pool != null && depth < parallelSubtreeMaxDepth && numRows >= parallelSubtreeMinRows
+                && ForkJoinTask.inForkJoinPool();
+    }
+
+    /**
+     * This class builds the subtree of a branch on the ForkJoinPool
+     */
+    private class ID3Task extends RecursiveTask<Node> {
+        private static final long serialVersionUID = 1L;
+
+        private Dataset examples;
+        private int rows[];
+        private int from;
+        private int to;
+        private Attribute targetAttribute;
+        private ArrayList<Attribute> candidates;
+        private BitSet available;
+        private int depth;
+        private Branch branch; //the branch the subtree is added to (null for the root)
+
+        ID3Task(Dataset examples, int rows[], int from, int to, Attribute targetAttribute,
+                ArrayList<Attribute> candidates, BitSet available, int depth, Branch branch) {
+            this.examples = examples;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.targetAttribute = targetAttribute;
+            this.candidates = candidates;
+            this.available = available;
+            this.depth = depth;
+            this.branch = branch;
+        }
+
+        @Override
+        protected Node compute() {
+            return ID3(examples, rows, from, to, targetAttribute, candidates, available, depth);
+        }
+    }
+
     /**
      * This method checks if a set of examples belong to the same class
      * @param S a set of examples
@@ -122,6 +349,40 @@ public class Learner {
         return true;
     }
 
+    /**
+     * This method checks if a subset of an encoded dataset belongs to the same class
+     * (the class given by the first value of the attribute)
+     * @param S the encoded dataset
+     * @param rows the indexes of the rows in the subset
+     * @param A attribute
+     * @return true if all examples belong to the same class, false otherwise
+     */
+    public boolean sameClass(Dataset S, int rows[], Attribute A){
+        return sameClass(S, rows, 0, rows.length, A);
+    }
+
+    /**
+     * This method checks if the rows rows[from .. to-1] of an encoded dataset belong to the same class
+     * @param S the encoded dataset
+     * @param rows a buffer of row indexes
+     * @param from the position of the first row in the buffer
+     * @param to the position after the last row in the buffer
+     * @param A attribute
+     * @return true if all examples belong to the same class, false otherwise
+     */
+    public boolean sameClass(Dataset S, int rows[], int from, int to, Attribute A){
+        if (S.isNumeric(A.getIndex()))
+            return true;
+
+        int codes[] = S.getCodes(A.getIndex());
+        for (int i = from; i < to; i++) {
+            if (codes[rows[i]] != 0) //not the first value of the attribute
+                return false;
+        }
+
+        return true;
+    }
+
     /**
      * This method gets the most common values in the dataset based on the target concept
      * @param examples a set of examples
@@ -143,6 +404,56 @@ public class Learner {
                 attrVals.put(exampleClass, count + 1);
             }
         }
+
+        return getMostCommonValue(attrVals);
+    }
+
+    /**
+     * This method gets the most common target value in a subset of an encoded dataset
+     * @param examples the encoded dataset
+     * @param rows the indexes of the rows in the subset
+     * @param targetAttribute the target attribute
+     * @return a target value as String
+     */
+    public String getMostCommonValue(Dataset examples, int rows[], Attribute targetAttribute) {
+        return getMostCommonValue(examples, rows, 0, rows.length, targetAttribute);
+    }
+
+    /**
+     * This method gets the most common target value of the rows rows[from .. to-1] of an encoded dataset
+     * @param examples the encoded dataset
+     * @param rows a buffer of row indexes
+     * @param from the position of the first row in the buffer
+     * @param to the position after the last row in the buffer
+     * @param targetAttribute the target attribute
+     * @return a target value as String
+     */
+    public String getMostCommonValue(Dataset examples, int rows[], int from, int to, Attribute targetAttribute) {
+        String targetVals[] = targetAttribute.getValues();
+        int targetCodes[] = examples.getCodes(targetAttribute.getIndex());
+        int counts[] = new int[targetVals.length];
+
+        //count all possible target values in examples
+        for (int i = from; i < to; i++) {
+            int code = targetCodes[rows[i]];
+            if (code >= 0 && code < counts.length)
+                counts[code]++;
+        }
+
+        //store the counts in a hashmap so ties are broken the same way as for unencoded examples
+        Map<String, Integer> attrVals = new HashMap<String, Integer>();
+        for (int i = 0; i < targetVals.length; i++)
+            attrVals.put(targetVals[i], counts[i]);
+
+        return getMostCommonValue(attrVals);
+    }
+
+    /**
+     * This method finds the target value with the highest count
+     * @param attrVals the count of each target value
+     * @return a target value as String
+     */
+    private String getMostCommonValue(Map<String, Integer> attrVals) {
         //find max value in hashmap
         Integer maxVal = Collections.max(attrVals.values());
         String maxAttr = "";
@@ -177,6 +488,69 @@ public class Learner {
         return examplesVi;
     }
 
+    /**
+     * This method returns the rows of a subset of an encoded dataset where an attribute takes on a certain value
+     * @param examples the encoded dataset
+     * @param rows the indexes of the rows in the subset
+     * @param A the attribute to check for value
+     * @param vi the index of the value in A.getValues()
+     * @return the indexes of the matching rows
+     */
+    public int[] getExamplesVi(Dataset examples, int rows[], Attribute A, int vi){
+        int codes[] = examples.getCodes(A.getIndex());
+        int rowsVi[] = new int[rows.length];
+        int count = 0;
+        for(int row : rows){
+            if(codes[row] == vi)
+                rowsVi[count++] = row;
+        }
+
+        return Arrays.copyOf(rowsVi, count);
+    }
+
+    /**
+     * This method groups the rows rows[from .. to-1] of an encoded dataset by the value of an attribute,
+     * reordering the buffer in place (one counting pass followed by swapping each row into its group).
+     * Rows whose value is unknown are moved after the last group.
+     * @param examples the encoded dataset
+     * @param rows a buffer of row indexes
+     * @param from the position of the first row in the buffer
+     * @param to the position after the last row in the buffer
+     * @param A a discrete attribute
+     * @return the start of each group; the rows with the value vi are in rows[starts[vi] .. starts[vi+1]-1]
+     */
+    public int[] partition(Dataset examples, int rows[], int from, int to, Attribute A){
+        int codes[] = examples.getCodes(A.getIndex());
+        int numGroups = A.getValues().length + 1; //the last group holds unknown values
+        int starts[] = new int[numGroups + 1];
+
+        for (int i = from; i < to; i++)
+            starts[group(codes[rows[i]], numGroups) + 1]++;
+        starts[0] = from;
+        for (int g = 0; g < numGroups; g++)
+            starts[g + 1] += starts[g];
+
+        int next[] = Arrays.copyOf(starts, numGroups); //the next free position in each group
+        for (int g = 0; g < numGroups; g++) {
+            while (next[g] < starts[g + 1]) {
+                int row = rows[next[g]];
+                int rowGroup = group(codes[row], numGroups);
+                if (rowGroup == g)
+                    next[g]++;
+                else { //swap the row into its group
+                    rows[next[g]] = rows[next[rowGroup]];
+                    rows[next[rowGroup]++] = row;
+                }
+            }
+        }
+
+        return starts;
+    }
+
+    private static int group(int code, int numGroups) {
+        return (code >= 0 && code < numGroups - 1) ? code : numGroups - 1;
+    }
+
     /**
      * This method excludes a certain attribute from the set of attributes
      * It is used primarily by the ID3 algorithm to return [Attributes - {A}]
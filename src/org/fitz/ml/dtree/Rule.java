@@ -2,6 +2,7 @@ package org.fitz.ml.dtree;
 
 import org.fitz.ml.Attribute;
 import org.fitz.ml.Attributes;
+import org.fitz.ml.data.Dataset;
 
 import java.util.ArrayList;
 
@@ -63,6 +64,33 @@ public class Rule {
 
     }
 
+    /**
+     * This method resolves the column of each statement in the rule
+     * @param attributes the attributes to use as rule labels
+     * @return the column index of each statement (-1 if not found)
+     */
+    public int[] getColumnIndexes(Attributes attributes){
+        int columns[] = new int[antecedent.size()];
+        for(int i = 0; i < columns.length; i++)
+            columns[i] = getAttributeIndex(antecedent.get(i), attributes);
+        return columns;
+    }
+
+    /**
+     * This method resolves the value code of each statement in the rule
+     * @param attributes the attributes to use as rule labels
+     * @return the code of the value of each statement
+     */
+    public int[] getValueCodes(Attributes attributes){
+        int valueCodes[] = new int[antecedent.size()];
+        for(int i = 0; i < valueCodes.length; i++){
+            int columnIndex = getAttributeIndex(antecedent.get(i), attributes);
+            valueCodes[i] = (columnIndex >= 0) ?
+                    Dataset.indexOfValue(attributes.get(columnIndex), antecedent.get(i).getValue()) : Dataset.UNKNOWN;
+        }
+        return valueCodes;
+    }
+
     /**
      * This method returns the index of an attribute in a rule
      * @param statement the precondition of a rule
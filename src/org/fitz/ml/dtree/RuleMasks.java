@@ -0,0 +1,135 @@
+package org.fitz.ml.dtree;
+
+import org.fitz.ml.Attribute;
+import org.fitz.ml.Attributes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * This class precomputes which rows of a dataset (usually the validation set) each rule statement matches.
+ * The rows are stored as bitsets (one bit per row in a long[]) and memoized per attribute and value,
+ * so the rows matched by a rule (or by a rule without its last preconditions) are found with
+ * bitwise ANDs and a popcount instead of rescanning the dataset.
+ */
+public class RuleMasks {
+    private ArrayList<ArrayList<String>> dataset;
+    private Attributes attributes;
+    private int numRows;
+    private int numWords;
+    private long allRows[];
+    private HashMap<String, long[]> statementMasks = new HashMap<String, long[]>();
+    private HashMap<String, long[]> consequentMasks = new HashMap<String, long[]>();
+
+    public RuleMasks(ArrayList<ArrayList<String>> dataset, Attributes attributes){
+        this.dataset = dataset;
+        this.attributes = attributes;
+        this.numRows = dataset.size();
+        this.numWords = (numRows + 63) >>> 6;
+        this.allRows = new long[numWords];
+        for (int row = 0; row < numRows; row++)
+            allRows[row >>> 6] |= 1L << row;
+    }
+
+    /**
+     * This method returns the rows matched by a statement (the attribute value equals the statement value,
+     * ignoring case). A statement on an unknown attribute matches all rows, as in Rule.isMatched.
+     * The returned array must not be modified.
+     * @param statement the precondition
+     * @return the bitset of matching rows
+     */
+    public long[] getStatementMask(Statement statement){
+        String key = statement.getAttributeName() + "\u0000" + statement.getValue();
+        long mask[] = statementMasks.get(key);
+        if (mask == null) {
+            int columnIndex = getAttributeIndex(statement.getAttributeName());
+            if (columnIndex < 0)
+                mask = allRows;
+            else {
+                mask = new long[numWords];
+                for (int row = 0; row < numRows; row++) {
+                    ArrayList<String> instance = dataset.get(row);
+                    if (instance.size() <= columnIndex || instance.get(columnIndex).equalsIgnoreCase(statement.getValue()))
+                        mask[row >>> 6] |= 1L << row;
+                }
+            }
+            statementMasks.put(key, mask);
+        }
+        return mask;
+    }
+
+    /**
+     * This method returns the rows whose target is the consequent of a rule.
+     * The returned array must not be modified.
+     * @param consequent the consequent
+     * @return the bitset of rows with this target
+     */
+    public long[] getConsequentMask(String consequent){
+        long mask[] = consequentMasks.get(consequent);
+        if (mask == null) {
+            int targetIndex = attributes.getTargetAttribute().getIndex();
+            mask = new long[numWords];
+            for (int row = 0; row < numRows; row++)
+                if (consequent.equals(dataset.get(row).get(targetIndex)))
+                    mask[row >>> 6] |= 1L << row;
+            consequentMasks.put(consequent, mask);
+        }
+        return mask;
+    }
+
+    /**
+     * This method returns the rows a rule matches (all preconditions and the consequent)
+     * @param rule the rule
+     * @return a new bitset of the matching rows
+     */
+    public long[] getRuleMask(Rule rule){
+        long mask[] = getConsequentMask(rule.getConsequent()).clone();
+        for (Statement statement : rule.getAntecedent())
+            and(mask, getStatementMask(statement));
+        return mask;
+    }
+
+    public int size(){
+        return numRows;
+    }
+
+    /**
+     * This method intersects a bitset with another (a = a AND b)
+     * @param a the bitset to update
+     * @param b the other bitset
+     */
+    public static void and(long a[], long b[]){
+        for (int i = 0; i < a.length; i++)
+            a[i] &= b[i];
+    }
+
+    /**
+     * This method adds the rows of a bitset to another (a = a OR b)
+     * @param a the bitset to update
+     * @param b the other bitset
+     */
+    public static void or(long a[], long b[]){
+        for (int i = 0; i < a.length; i++)
+            a[i] |= b[i];
+    }
+
+    /**
+     * This method counts the rows in a bitset
+     * @param a the bitset
+     * @return the number of rows
+     */
+    public static int count(long a[]){
+        int count = 0;
+        for (long word : a)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    private int getAttributeIndex(String name){
+        ArrayList<Attribute> attributeList = attributes.getAttributes();
+        for (int i = 0; i < attributeList.size(); i++)
+            if (attributeList.get(i).getName().equals(name))
+                return i;
+        return -1;
+    }
+}
@@ -2,6 +2,7 @@ package org.fitz.ml.dtree;
 
 import org.fitz.ml.Attributes;
 import org.fitz.ml.constants.DtreeConstants;
+import org.fitz.ml.data.Dataset;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -13,6 +14,7 @@ import java.util.Collections;
 public class Tree {
     private Node root = null;
     ArrayList<Rule> rules = new ArrayList<Rule>();
+    private boolean isRulesFromTree = false; //true while the rules are exactly the paths of the tree
 
 
     public Tree() {
@@ -29,6 +31,7 @@ public class Tree {
 
     public void setRoot(Node root) {
         this.root = root;
+        this.isRulesFromTree = false;
     }
 
     public ArrayList<Rule> getRules() {
@@ -39,6 +42,7 @@ public class Tree {
      * This method derives rules from all paths in a tree
      */
     public void deriveRules() {
+        isRulesFromTree = rules.isEmpty();
         ArrayList<ArrayList<Node>> paths = new ArrayList<ArrayList<Node>>();
         ArrayList<Node> currentPath = new ArrayList<Node>();
 
@@ -71,12 +75,15 @@ public class Tree {
 
 
     /**
-     * This method attempts rule post-pruning on a set of rules
+     * This method attempts rule post-pruning on a set of rules.
+     * The rows of the validation set matched by each precondition are computed once as bitsets,
+     * so the accuracy of a rule with or without a precondition is a bitwise AND and a popcount.
      * @param validationSet the set to use to determine accuracy
      * @param attributes the list of attributes to provide labels for matching a rule
      */
     public void tryPostRulePruning(ArrayList<ArrayList<String>> validationSet, Attributes attributes) {
-        Double classificationAccuracy = getAccuracy(validationSet, attributes);
+        RuleMasks masks = new RuleMasks(validationSet, attributes);
+        Double classificationAccuracy = getAccuracy(masks);
         ArrayList<Double> ruleAccuracies = new ArrayList<Double>();
         ArrayList<Rule> sortedRules = new ArrayList<Rule>();
         System.out.println("\nAccuracy Before Pruning: " + String.format("%.2f", classificationAccuracy) + "%");
@@ -84,23 +91,24 @@ public class Tree {
         for (Rule rule : rules) {
             if (rule.getAntecedent().size() > 0) {
                 //check if a pruning a precondtion would increase rule acccuracy
-                int preconditionIndex = isRuleWorthPruning(rule, validationSet, attributes);
+                int preconditionIndex = isRuleWorthPruning(rule, masks);
                 if (preconditionIndex != -1) {
-                    while (isRuleWorthPruning(rule, validationSet, attributes) !=-1) {
+                    while (isRuleWorthPruning(rule, masks) !=-1) {
                         pruneRule(rule, preconditionIndex);
                     }
                     isPruningSuccessful = true;
                 }
             }
         }
-        classificationAccuracy = getAccuracy(validationSet, attributes);
+        classificationAccuracy = getAccuracy(masks);
 
         //get the accuracy of each rule
         for(Rule rule : rules){
-            Double ruleAccuracy = getRuleAccuracy(validationSet, attributes, rule);
+            Double ruleAccuracy = getRuleAccuracy(masks, rule);
             ruleAccuracies.add(ruleAccuracy);
         }
         //sort rules by rule accuracy
+        isRulesFromTree = false;
         while(ruleAccuracies.size() > 0){
             int index=0;
             Double max = Collections.max(ruleAccuracies, null);
@@ -123,7 +131,7 @@ public class Tree {
 
             System.out.print("\n=============== PRUNED RULES ===================\n");
             printRules();
-            System.out.println("\nAccuracy after pruning: " + String.format("%.2f", getAccuracy(validationSet, attributes)) + "%");
+            System.out.println("\nAccuracy after pruning: " + String.format("%.2f", getAccuracy(masks)) + "%");
         }
 
     }
@@ -138,33 +146,42 @@ public class Tree {
     public int isRuleWorthPruning(Rule rule,
                                       ArrayList<ArrayList<String>> validationSet,
                                       Attributes attributes) {
-        int ruleIndex = rules.indexOf(rule);
-        Double currentAccuracy = getRuleAccuracy(validationSet, attributes, rule);
-        Double newAccuracy =0.0;
-        int indexOfHighestAccuracy=-1;
-
-        if (ruleIndex > -1) {
-            Rule ruleBeforePrune = rule.copy(); //create a copy of the rule before modifying it
-            ArrayList<Statement> antecedent = rule.getAntecedent();
-            int ruleSize = antecedent.size();
-            //start at last part of rule and move closer to top since top part has highest info gain
-            for(int i = antecedent.size()-1; i >= 0; i--){
-                antecedent.remove(i); //remove each part of antecedent, one by one
-
-                rules.get(ruleIndex).setAntecedent(antecedent); //update original rules to get new accuracy
-                newAccuracy = getRuleAccuracy(validationSet, attributes, rule);
-                if(newAccuracy > currentAccuracy) {
-                    rules.get(ruleIndex).setAntecedent(ruleBeforePrune.getAntecedent()); //undo removal
-                    indexOfHighestAccuracy = i;
-                    currentAccuracy = newAccuracy;
-                }
+        return isRuleWorthPruning(rule, new RuleMasks(validationSet, attributes));
+    }
 
-                rules.get(ruleIndex).setAntecedent(ruleBeforePrune.getAntecedent()); //undo removal
+    /**
+     * This method checks if a rule is worth pruning using the precomputed rows matched by each precondition.
+     * As with the validation set, the candidates are the rule without its last precondition, without its
+     * last two preconditions, and so on; the rows matched by each candidate are the prefix ANDs of the
+     * statement bitsets.
+     * @param rule the rule to check
+     * @param masks the rows of the validation set matched by each statement
+     * @return index of precondition with highest accuracy if removed (-1 if no removal increases the accuracy)
+     */
+    private int isRuleWorthPruning(Rule rule, RuleMasks masks) {
+        ArrayList<Statement> antecedent = rule.getAntecedent();
+        int ruleSize = antecedent.size();
+        int indexOfHighestAccuracy = -1;
+
+        //prefixes[i] = rows matching the consequent and preconditions 0 .. i-1
+        long prefixes[][] = new long[ruleSize + 1][];
+        prefixes[0] = masks.getConsequentMask(rule.getConsequent());
+        for (int i = 0; i < ruleSize; i++) {
+            prefixes[i + 1] = prefixes[i].clone();
+            RuleMasks.and(prefixes[i + 1], masks.getStatementMask(antecedent.get(i)));
+        }
+        Double currentAccuracy = getRuleAccuracy(masks, prefixes[ruleSize]);
+
+        //start at last part of rule and move closer to top since top part has highest info gain
+        for (int i = ruleSize - 1; i >= 0; i--) {
+            Double newAccuracy = getRuleAccuracy(masks, prefixes[i]);
+            if (newAccuracy > currentAccuracy) {
+                indexOfHighestAccuracy = i;
+                currentAccuracy = newAccuracy;
             }
         }
 
         return indexOfHighestAccuracy;
-
     }
 
     /**
@@ -173,13 +190,10 @@ public class Tree {
      * @param rule the rule to prune
      */
     public void pruneRule(Rule rule, int preconditionIndex){
-        int ruleIndex = rules.indexOf(rule);
+        isRulesFromTree = false;
         ArrayList<Statement> antecedent = rule.getAntecedent();
-        int ruleSize = antecedent.size();
-        if (ruleSize >= preconditionIndex)
+        if (preconditionIndex >= 0 && preconditionIndex < antecedent.size())
             antecedent.remove(preconditionIndex);
-
-        rules.get(ruleIndex).setAntecedent(antecedent);
     }
 
     /**
@@ -215,6 +229,56 @@ public class Tree {
     }
 
 
+    /**
+     * This method calculates the accuracy of the ruleset based on an encoded dataset.
+     * While the rules are the paths of the tree, each row is classified by walking the compiled tree;
+     * otherwise (after pruning) the rules are compiled into a flat table and matched in order.
+     *
+     * @param dataset the encoded dataset to use to measure accuracy
+     * @param attributes the attributes to use to match rule labels
+     * @return the accuracy
+     */
+    public Double getAccuracy(Dataset dataset, Attributes attributes) {
+        Double totalExamples = (double) dataset.size();
+        Double totalCorrect = 0.0;
+        int targetCodes[] = dataset.getTargetCodes();
+
+        if (isRulesFromTree) {
+            CompiledTree compiledTree = compile(attributes);
+            for (int row = 0; row < dataset.size(); row++) { //for each instance in dataset
+                int classification = compiledTree.classify(dataset, row);
+                if (classification != Dataset.UNKNOWN && classification == targetCodes[row])
+                    totalCorrect++;
+            }
+        }
+        else {
+            CompiledRules compiledRules = new CompiledRules(rules, attributes);
+            for (int row = 0; row < dataset.size(); row++) { //for each instance in dataset
+                if (compiledRules.match(dataset, row) >= 0)
+                    totalCorrect++;
+            }
+        }
+
+        if (totalCorrect == 0)
+            return totalCorrect;
+        else
+            return (totalCorrect / totalExamples) * 100.0;
+    }
+
+    /**
+     * This method compiles the tree into flat arrays for fast classification
+     * @param attributes the attributes used to resolve the node labels
+     * @return the compiled tree
+     */
+    public CompiledTree compile(Attributes attributes) {
+        return new CompiledTree(root, attributes);
+    }
+
+    public boolean isRulesFromTree() {
+        return isRulesFromTree;
+    }
+
+
     /**
      * This method calculates the accuracy of a rule to aid in post-pruning
      * @param dataset the dataset on which to test accuracy
@@ -228,17 +292,61 @@ public class Tree {
         int targetIndex = attributes.getTargetIndex();
 
         for (ArrayList<String> instance : dataset) { //for each instance in dataset
-            boolean isRuleMatched;
-                isRuleMatched = rule.isMatched(instance, attributes); //try to match rule to instance
-                if (isRuleMatched) {
-                    String classification = rule.getConsequent();
-                    if(instance.get(targetIndex).equalsIgnoreCase(classification))
-                        totalCorrect++;
-                    break;
-                }
+            boolean isRuleMatched = rule.isMatched(instance, attributes); //try to match rule to instance
+            if (isRuleMatched) {
+                String classification = rule.getConsequent();
+                if(instance.get(targetIndex).equalsIgnoreCase(classification))
+                    totalCorrect++;
+                break;
             }
+        }
+
+        if (totalCorrect == 0)
+            return totalCorrect;
+        else
+            return (totalCorrect / totalExamples) * 100.0;
+    }
+
+    /**
+     * This method calculates the accuracy of a rule from the precomputed rows matched by each statement
+     * @param masks the rows of the validation set matched by each statement
+     * @param rule the rule for which the accuracy must be computed
+     * @return the accuracy
+     */
+    private Double getRuleAccuracy(RuleMasks masks, Rule rule) {
+        return getRuleAccuracy(masks, masks.getRuleMask(rule));
+    }
 
+    /**
+     * This method calculates the accuracy of a rule from the rows it matches. As in
+     * getRuleAccuracy(dataset, attributes, rule), only the first matching row is counted
+     * @param masks the rows of the validation set matched by each statement
+     * @param ruleMask the rows matched by the rule (its preconditions and its consequent)
+     * @return the accuracy
+     */
+    private Double getRuleAccuracy(RuleMasks masks, long ruleMask[]) {
+        Double totalExamples = (double) masks.size();
+        Double totalCorrect = (RuleMasks.count(ruleMask) > 0) ? 1.0 : 0.0;
 
+        if (totalCorrect == 0)
+            return totalCorrect;
+        else
+            return (totalCorrect / totalExamples) * 100.0;
+    }
+
+    /**
+     * This method calculates the accuracy of the ruleset from the precomputed rows matched by each statement.
+     * An instance is classified correctly if any rule matches it, since a rule only matches
+     * instances whose target is its consequent.
+     * @param masks the rows of the validation set matched by each statement
+     * @return the accuracy
+     */
+    private Double getAccuracy(RuleMasks masks) {
+        Double totalExamples = (double) masks.size();
+        long correct[] = new long[(masks.size() + 63) >>> 6];
+        for (Rule rule : rules)
+            RuleMasks.or(correct, masks.getRuleMask(rule));
+        Double totalCorrect = (double) RuleMasks.count(correct);
 
         if (totalCorrect == 0)
             return totalCorrect;
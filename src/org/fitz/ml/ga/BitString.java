@@ -0,0 +1,129 @@
+package org.fitz.ml.ga;
+
+import java.util.Arrays;
+
+/**
+ * This class stores the bit string of a rule or an hypothesis in an array of longs, 64 bits per word.
+ * Bit i is the i-th character of the equivalent String of '0' and '1' (see valueOf and toString).
+ * Ranges of bits are copied a word at a time (see append), so crossover does not create Strings,
+ * and a bit is mutated by flipping it in place.
+ * The bits after the last bit of the string are always 0.
+ */
+public class BitString {
+    private long words[];
+    private int length = 0;
+
+    /**
+     * @param capacity the number of bits the string is expected to hold (it grows if more are appended)
+     */
+    public BitString(int capacity){
+        words = new long[Math.max(1, (capacity + 63) >>> 6)];
+    }
+
+    /**
+     * This method creates a bit string from a String of '0' and '1' characters
+     * @param bitStr the String
+     * @return the bit string
+     */
+    public static BitString valueOf(String bitStr){
+        BitString bits = new BitString(bitStr.length());
+        for (int i = 0; i < bitStr.length(); i++)
+            if (bitStr.charAt(i) == '1')
+                bits.words[i >>> 6] |= 1L << i;
+        bits.length = bitStr.length();
+        return bits;
+    }
+
+    public int length(){
+        return length;
+    }
+
+    public boolean get(int i){
+        return (words[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * This method inverts a bit
+     * @param i the index of the bit (less than the length)
+     */
+    public void flip(int i){
+        if (i < 0 || i >= length)
+            throw new IndexOutOfBoundsException("bit " + i + " of " + length);
+        words[i >>> 6] ^= 1L << i;
+    }
+
+    /**
+     * This method appends a range of another bit string (or of this one) to the end of this bit string
+     * @param src the bit string to copy from
+     * @param from the first bit to copy
+     * @param to the end of the range (exclusive)
+     * @return this bit string
+     */
+    public BitString append(BitString src, int from, int to){
+        if (from < 0 || to > src.length || from > to)
+            throw new IndexOutOfBoundsException("range " + from + "-" + to + " of " + src.length);
+        int newLength = length + to - from;
+        if (newLength > words.length << 6)
+            words = Arrays.copyOf(words, Math.max(words.length * 2, (newLength + 63) >>> 6));
+        while (from < to) {
+            int n = Math.min(64, to - from);
+            write(length, n, src.read(from, n));
+            length += n;
+            from += n;
+        }
+        return this;
+    }
+
+    /**
+     * This method checks if any bit of a range is set
+     * @param from the first bit of the range
+     * @param to the end of the range (exclusive)
+     * @return true if at least one bit is 1
+     */
+    public boolean anySet(int from, int to){
+        for (; from < to; from += 64)
+            if (read(from, Math.min(64, to - from)) != 0)
+                return true;
+        return false;
+    }
+
+    /**
+     * This method reads up to 64 bits starting at any bit, bit from + k being bit k of the result
+     */
+    long read(int from, int n){
+        int word = from >>> 6;
+        int shift = from & 63;
+        long bits = words[word] >>> shift;
+        if (shift != 0 && shift + n > 64)
+            bits |= words[word + 1] << (64 - shift);
+        return (n == 64) ? bits : bits & ((1L << n) - 1);
+    }
+
+    /**
+     * This method writes n bits at a position where all bits are still 0
+     */
+    private void write(int at, int n, long bits){
+        int word = at >>> 6;
+        int shift = at & 63;
+        words[word] |= bits << shift;
+        if (shift != 0 && shift + n > 64)
+            words[word + 1] |= bits >>> (64 - shift);
+    }
+
+    /**
+     * This method converts a range of the bit string to a String of '0' and '1' characters
+     * @param from the first bit
+     * @param to the end of the range (exclusive)
+     * @return the String
+     */
+    public String toString(int from, int to){
+        char chars[] = new char[to - from];
+        for (int i = from; i < to; i++)
+            chars[i - from] = get(i) ? '1' : '0';
+        return new String(chars);
+    }
+
+    public String toString(){
+        return toString(0, length);
+    }
+}
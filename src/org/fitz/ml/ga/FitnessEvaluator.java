@@ -0,0 +1,241 @@
+package org.fitz.ml.ga;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This class computes the fitness of the hypotheses of a population, optionally on an executor.
+ * The population is split into contiguous ranges; each task computes the fitness of its range and
+ * the first fittest hypothesis of the range, and the ranges are merged in order on the calling
+ * thread, so the tasks share no state and the fittest is the same as when evaluating one
+ * hypothesis after the other (the first hypothesis with the maximum fitness).
+ * The time spent per generation is recorded so the throughput can be reported.
+ */
+public class FitnessEvaluator {
+    private static final int TASKS_PER_THREAD = 4; //smaller ranges balance hypotheses of different sizes
+
+    private InstanceBitmaps instances;
+    private ExecutorService executor; //null when evaluating on the calling thread
+    private int numTasks;
+    private boolean ownsExecutor = false;
+
+    private long lastHypotheses = 0; //the number of hypotheses evaluated by the last call to evaluate
+    private long lastTime = 0;       //the time of the last call to evaluate in nanoseconds
+    private long totalHypotheses = 0;
+    private long totalTime = 0;
+    private int generations = 0;
+
+    /**
+     * This constructor evaluates the hypotheses on the calling thread
+     * @param instances the training instances
+     */
+    public FitnessEvaluator(InstanceBitmaps instances){
+        this(instances, null, 1);
+    }
+
+    /**
+     * @param instances the training instances
+     * @param executor the executor running the tasks (not shut down by shutdown)
+     * @param numTasks the number of ranges the population is split into (at most one hypothesis per range)
+     */
+    public FitnessEvaluator(InstanceBitmaps instances, ExecutorService executor, int numTasks){
+        this.instances = instances;
+        this.executor = executor;
+        this.numTasks = Math.max(1, numTasks);
+    }
+
+    /**
+     * This method creates an evaluator with its own pool of threads
+     * @param instances the training instances
+     * @param threads the number of threads (1 or less = on the calling thread)
+     * @param virtualThreads true to run each hypothesis on its own virtual thread (for fitness functions
+     *                       that block, e.g. on I/O); a cached pool of threads is used if the JVM has no virtual threads
+     * @return the evaluator
+     */
+    public static FitnessEvaluator create(InstanceBitmaps instances, int threads, boolean virtualThreads){
+        FitnessEvaluator evaluator;
+        if (virtualThreads)
+            evaluator = new FitnessEvaluator(instances, newVirtualThreadExecutor(), Integer.MAX_VALUE);
+        else if (threads > 1)
+            evaluator = new FitnessEvaluator(instances, Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "fitness");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }), threads * TASKS_PER_THREAD);
+        else
+            return new FitnessEvaluator(instances);
+        evaluator.ownsExecutor = true;
+        return evaluator;
+    }
+
+    /**
+     * This method creates an executor that starts a virtual thread per task. Virtual threads only exist
+     * from Java 21, so the executor is looked up by reflection and a cached pool of daemon threads
+     * is returned on older JVMs.
+     * @return the executor
+     */
+    public static ExecutorService newVirtualThreadExecutor(){
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (Exception e) {
+            System.out.println("Virtual threads are not available (" + e.getClass().getSimpleName() + "), using a cached thread pool");
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "fitness");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * This method computes the fitness of every hypothesis of a population and sets its fittest
+     * @param P the population
+     * @return the maximum fitness
+     */
+    public double evaluate(Population P){
+        long start = System.nanoTime();
+        final ArrayList<Hypothesis> hypotheses = P.getHypotheses();
+        int n = hypotheses.size();
+        int tasks = (executor != null) ? Math.min(numTasks, n) : 1;
+        Range fittest;
+
+        if (tasks <= 1)
+            fittest = evaluate(hypotheses, 0, n);
+        else {
+            List<Future<Range>> futures = new ArrayList<Future<Range>>(tasks);
+            for (int t = 0; t < tasks; t++) {
+                final int from = (int) ((long) n * t / tasks);
+                final int to = (int) ((long) n * (t + 1) / tasks);
+                futures.add(executor.submit(new Callable<Range>() {
+                    @Override
+                    public Range call() {
+                        return evaluate(hypotheses, from, to);
+                    }
+                }));
+            }
+
+            fittest = new Range();
+            try {
+                for (Future<Range> future : futures) {
+                    Range range = future.get();
+                    if (range.maxFitness > fittest.maxFitness) //strictly greater: the first maximum is kept
+                        fittest = range;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Fitness evaluation interrupted", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Fitness evaluation failed", e.getCause());
+            }
+        }
+
+        if (fittest.fittest != null)
+            P.setFittest(fittest.fittest);
+
+        lastTime = System.nanoTime() - start;
+        lastHypotheses = n;
+        totalTime += lastTime;
+        totalHypotheses += n;
+        generations++;
+        return fittest.maxFitness;
+    }
+
+    /**
+     * This method computes the fitness of a range of hypotheses
+     * @return the first hypothesis of the range with the maximum fitness
+     */
+    private Range evaluate(ArrayList<Hypothesis> hypotheses, int from, int to){
+        Range range = new Range();
+        for (int i = from; i < to; i++) {
+            Hypothesis h = hypotheses.get(i);
+            h.computeFitness(instances);
+
+            //determine fittest and maxFitness while computing fitness
+            if (h.getFitness() > range.maxFitness) {
+                range.maxFitness = h.getFitness();
+                range.fittest = h;
+            }
+        }
+        return range;
+    }
+
+    /**
+     * This method returns the throughput of the last call to evaluate
+     * @return the number of hypotheses evaluated per second
+     */
+    public double getLastHypothesesPerSecond(){
+        return (lastTime > 0) ? lastHypotheses / (lastTime / 1e9) : 0;
+    }
+
+    /**
+     * @return the time of the last call to evaluate in seconds
+     */
+    public double getLastTime(){
+        return lastTime / 1e9;
+    }
+
+    /**
+     * This method returns the throughput over all calls to evaluate
+     * @return the number of hypotheses evaluated per second
+     */
+    public double getHypothesesPerSecond(){
+        return (totalTime > 0) ? totalHypotheses / (totalTime / 1e9) : 0;
+    }
+
+    public long getHypothesesEvaluated(){
+        return totalHypotheses;
+    }
+
+    /**
+     * @return the number of calls to evaluate (one per generation)
+     */
+    public int getGenerations(){
+        return generations;
+    }
+
+    /**
+     * @return the time spent evaluating in seconds
+     */
+    public double getTotalTime(){
+        return totalTime / 1e9;
+    }
+
+    /**
+     * This method clears the throughput statistics (for example before a new run)
+     */
+    public void resetStatistics(){
+        lastHypotheses = lastTime = totalHypotheses = totalTime = 0;
+        generations = 0;
+    }
+
+    /**
+     * This method stops the threads of the evaluator if it created them
+     */
+    public void shutdown(){
+        if (ownsExecutor && executor != null)
+            executor.shutdown();
+        executor = null;
+    }
+
+    /**
+     * This class holds the fittest hypothesis of a range of a population
+     */
+    private static class Range {
+        private double maxFitness = Double.MIN_VALUE;
+        private Hypothesis fittest;
+    }
+}
@@ -3,6 +3,7 @@ package org.fitz.ml.ga;
 import org.fitz.ml.Attribute;
 import org.fitz.ml.Attributes;
 import org.fitz.ml.constants.GAconstants;
+import org.fitz.ml.data.Dataset;
 import org.fitz.util.HypothesisSorter;
 
 import java.util.ArrayList;
@@ -21,6 +22,10 @@ public class GA {
     private Attribute targetAttribute;
     private ArrayList<ArrayList<String>> instances;
     private ArrayList<ArrayList<String>> testSet;
+    private InstanceBitmaps instanceBitmaps; //the instances encoded once for fitness evaluation
+    private FitnessEvaluator evaluator; //computes the fitness of the populations (on the calling thread by default)
+    private boolean printThroughput = false; //print the fitness evaluation throughput of each generation
+    private RuleLayout layout; //the fields of the attributes in the bit string of a rule
     private int N = 0; //the length of a rule based on attributes and attribute values
     private int min; //the minimum number of rules per hypothesis
     private int max; //the maximum number of rules per hypothesis
@@ -40,11 +45,12 @@ public class GA {
         this.targetAttribute = attributes.getTargetAttribute();
         this.min = min;
         this.max = max;
-        for(int i=0; i < attributes.getAttributes().size(); i++){
-            if(i == targetAttribute.getIndex())
-                N += targetAttribute.getValues().length - 1;
-            else N += attributes.get(i).getValues().length;
-        }
+        this.layout = new RuleLayout(attributes);
+        this.N = layout.getLength();
+        this.instanceBitmaps = new InstanceBitmaps(Dataset.encode(instances, attributes, true), layout);
+        if (evaluator != null)
+            evaluator.shutdown();
+        this.evaluator = new FitnessEvaluator(instanceBitmaps);
 
         this.ruleBitStrings = new ArrayList<String>();
         this.generatedRules = new ArrayList<Rule>();
@@ -55,6 +61,44 @@ public class GA {
 //        printRules();
     }
 
+    /**
+     * This method selects the threads used to compute the fitness of the hypotheses (call after init)
+     * @param threads the number of threads (1 or less = on the calling thread)
+     * @param virtualThreads true to evaluate each hypothesis on its own virtual thread instead
+     */
+    public void setEvaluationThreads(int threads, boolean virtualThreads){
+        setEvaluator(FitnessEvaluator.create(instanceBitmaps, threads, virtualThreads));
+    }
+
+    /**
+     * This method replaces the fitness evaluator (call after init); the previous evaluator is shut down
+     * @param evaluator the evaluator
+     */
+    public void setEvaluator(FitnessEvaluator evaluator){
+        if (this.evaluator != null && this.evaluator != evaluator)
+            this.evaluator.shutdown();
+        this.evaluator = evaluator;
+    }
+
+    public FitnessEvaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * @param printThroughput true to print the fitness evaluation throughput of each generation
+     */
+    public void setPrintThroughput(boolean printThroughput){
+        this.printThroughput = printThroughput;
+    }
+
+    /**
+     * This method stops the threads used to compute fitness
+     */
+    public void shutdown(){
+        if (evaluator != null)
+            evaluator.shutdown();
+    }
+
     public ArrayList<ArrayList<String>> getInstances() {
         return instances;
     }
@@ -85,6 +129,7 @@ public class GA {
         System.out.println("\t Selection Strategy: " + strategy +"\n");
 
         // Evaluate: for each h in P , compute Fitness(h)
+        evaluator.resetStatistics();
         double maxFitness = evaluateHypotheses(P);
 
         while (maxFitness < fitnessThreshold) {
@@ -113,6 +158,7 @@ public class GA {
 
         }
 
+        printThroughput();
         return P.getFittest();
 
     }
@@ -146,6 +192,7 @@ public class GA {
         System.out.println("\t Selection Strategy: " + strategy + "\n");
 
         // Evaluate: for each h in P , compute Fitness(h)
+        evaluator.resetStatistics();
         evaluateHypotheses(P);
 
         for(int i = 0; i < numGenerations; i++) {
@@ -174,6 +221,7 @@ public class GA {
 
         }
 
+        printThroughput();
         return P.getFittest();
 
     }
@@ -217,20 +265,25 @@ public class GA {
      * @return the maximum fitness
      */
     public double evaluateHypotheses(Population P){
-        //For each h in P , compute Fitness(h)
-        double maxFitness = Double.MIN_VALUE;
-        for (Hypothesis h : P.getHypotheses()) {
-            h.computeFitness(instances);
-
-            //determine fittest and maxFitness while computing fitness
-            if(h.getFitness() > maxFitness) {
-                maxFitness = h.getFitness();
-                P.setFittest(h);
-            }
-        }
+        //For each h in P , compute Fitness(h) (in parallel if the evaluator has threads)
+        double maxFitness = evaluator.evaluate(P);
+        if (printThroughput)
+            System.out.format("\t Generation %d: %d hypotheses in %.2fms = %.0f hypotheses/sec (max fitness %.2f)%n",
+                    evaluator.getGenerations() - 1, P.getHypotheses().size(), evaluator.getLastTime() * 1000,
+                    evaluator.getLastHypothesesPerSecond(), maxFitness);
         return maxFitness;
     }
 
+    /**
+     * This method prints the fitness evaluation throughput of a run
+     */
+    private void printThroughput(){
+        if (printThroughput)
+            System.out.format("Evaluated %d hypotheses in %d generations in %.2fs = %.0f hypotheses/sec%n",
+                    evaluator.getHypothesesEvaluated(), evaluator.getGenerations(), evaluator.getTotalTime(),
+                    evaluator.getHypothesesPerSecond());
+    }
+
     /**
      * This method select members from a population using a selection strategy
      * @param m number of members to select from the population
@@ -418,8 +471,8 @@ public class GA {
             Hypothesis parent1 = pair[0];
             Hypothesis parent2 = pair[1];
             Hypothesis offspring1, offspring2;
-            String h1 = parent1.getBitString();
-            String h2 = parent2.getBitString();
+            BitString h1 = parent1.getBits();
+            BitString h2 = parent2.getBits();
             if (h1.length() == 0 || h2.length() == 0) {
                 break; //can only do randInt(n) with valid bitstrings (length greater than 0)
             }
@@ -429,45 +482,39 @@ public class GA {
 
             h1Pt1 = rand.nextInt(len1);
             h1Pt2 = rand.nextInt(len1);
-            ArrayList<Integer[]> parent2Pts = new ArrayList<Integer[]>();
             //make sure random numbers are different
             while (h1Pt2 <= h1Pt1) {
                 h1Pt1 = rand.nextInt(len1);
                 h1Pt2 = rand.nextInt(len1);
             }
 
-            int rule1Len = parent1.getRuleset().get(0).getRuleBitString().length();
+            int rule1Len = N;
 
             d1 = h1Pt1 % rule1Len;
             d2 = h1Pt2 % rule1Len;
 //            System.out.print("(d1,d2)=(" + d1 + "," + d2 + ")\n");
 
-            //use d1 and d2 to determine possible crossover points for h2
-            for (int i = 0; i < len2; i += rule1Len) {
-                int crossPt1 = i + d1;
-                for (int j = 0; j < len2; j += rule1Len) {
-                    int crossPt2 = j + d2;
-                    if (crossPt1 < crossPt2) {
-//                        System.out.print("<" + crossPt1 + "," + crossPt2 + ">\t");
-                        parent2Pts.add(new Integer[]{crossPt1, crossPt2});
-                    }
-                }
-            }
+            //use d1 and d2 to determine possible crossover points for h2:
+            //the points i + d1 < j + d2 for rule starts i and j of h2
+            int numPts = countCrossoverPoints(len2, rule1Len, d1, d2, -1, null);
 
             //make sure crossover points generated
-            if (parent2Pts.size() > 0) {
+            if (numPts > 0) {
                 //pick a random set of point from the possible crossover points for h2
-                Integer[] randPoint2 = parent2Pts.get(rand.nextInt(parent2Pts.size()));
+                int randPoint2[] = new int[2];
+                countCrossoverPoints(len2, rule1Len, d1, d2, rand.nextInt(numPts), randPoint2);
                 int h2Pt1 = randPoint2[0];
                 int h2Pt2 = randPoint2[1];
 
 //            System.out.print("picked " + h2Pt1 + ", " + h2Pt2 + "\n");
 
-                // apply crossover using points selected above
-                String h3 = h1.substring(0, h1Pt1) + h2.substring(h2Pt1, h2Pt2) + h1.substring(h1Pt2, h1.length());
-                String h4 = h2.substring(0, h2Pt1) + h1.substring(h1Pt1, h1Pt2) + h2.substring(h2Pt2, h2.length());
-                offspring1 = new Hypothesis(genRuleSetFromHypothesis(h3), attributes);
-                offspring2 = new Hypothesis(genRuleSetFromHypothesis(h4), attributes);
+                // apply crossover using points selected above, copying the bits a word at a time
+                BitString h3 = new BitString(h1Pt1 + (h2Pt2 - h2Pt1) + (len1 - h1Pt2));
+                h3.append(h1, 0, h1Pt1).append(h2, h2Pt1, h2Pt2).append(h1, h1Pt2, len1);
+                BitString h4 = new BitString(h2Pt1 + (h1Pt2 - h1Pt1) + (len2 - h2Pt2));
+                h4.append(h2, 0, h2Pt1).append(h1, h1Pt1, h1Pt2).append(h2, h2Pt2, len2);
+                offspring1 = new Hypothesis(h3, layout);
+                offspring2 = new Hypothesis(h4, layout);
                 Ps.addHypothesis(offspring1);
                 Ps.addHypothesis(offspring2);
 
@@ -476,6 +523,37 @@ public class GA {
 
     }
 
+    /**
+     * This method enumerates the crossover points of the second parent of a two-point crossover:
+     * the pairs (i + d1, j + d2) with i + d1 < j + d2, where i and j are the starts of the rules
+     * of the parent, in the order of i then j
+     * @param len the length of the bit string of the parent
+     * @param ruleLen the length of a rule
+     * @param d1 the offset of the first point in its rule
+     * @param d2 the offset of the second point in its rule
+     * @param k the index of the pair to find, or -1 to count all the pairs
+     * @param point receives pair k (unless k is -1)
+     * @return the number of pairs before pair k, or of all the pairs if k is -1
+     */
+    private int countCrossoverPoints(int len, int ruleLen, int d1, int d2, int k, int point[]){
+        int count = 0;
+        for (int i = 0; i < len; i += ruleLen) {
+            int crossPt1 = i + d1;
+            for (int j = 0; j < len; j += ruleLen) {
+                int crossPt2 = j + d2;
+                if (crossPt1 < crossPt2) {
+                    if (count == k) {
+                        point[0] = crossPt1;
+                        point[1] = crossPt2;
+                        return count;
+                    }
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
     /**
      * This method selects m members of a population and performs
      * mutation by flipping a random bit
@@ -498,9 +576,7 @@ public class GA {
 
         for(Integer i: memberIndexes){
             Hypothesis h = hypotheses.get(i);
-            StringBuilder sb = new StringBuilder(h.getBitString());
-            h.setRuleset(genRuleSetFromHypothesis(flipBit(sb)));
-//            h = new Hypothesis(getRuleSetFromHypothesis(flipBit(sb)), attributes);
+            h.setBits(flipBit(h.getBits())); //the rules are decoded again only when needed
         }
 
     }
@@ -519,7 +595,7 @@ public class GA {
             m = rand.nextInt((max - min) + 1) + min;
             ArrayList<Rule> randRules = getRandomRuleSample(m);
 //            System.out.print("rules:" +randRules.size()+"\n");
-            Hypothesis hypothesis = new Hypothesis(randRules, attributes);
+            Hypothesis hypothesis = new Hypothesis(randRules, layout);
             randHypotheses.add(hypothesis);
         }
         return randHypotheses;
@@ -556,10 +632,8 @@ public class GA {
 
         for (int i = 2; i < ruleBitStrings.size(); i++) { //skip *0 and *1 (invalid rule)
             String ruleBitStr = ruleBitStrings.get(i);
-            Rule rule = new Rule();
-            rule = rule.getRuleFromString(ruleBitStr, attributes);
+            Rule rule = Rule.decode(BitString.valueOf(ruleBitStr), 0, layout);
             if(rule != null) {
-                rule.setRuleBitString(ruleBitStr);
                 generatedRules.add(rule);
 //                rule.printRule();
             }
@@ -583,24 +657,6 @@ public class GA {
         }
     }
 
-    /**
-     * This method generate a ruleset from a certain hypothesis bit string
-     * @param hStr hypothesis bit string
-     * @return an ArrayList of rules generated from the hypothesis bit string
-     */
-    public ArrayList<Rule> genRuleSetFromHypothesis(String hStr) {
-        ArrayList<Rule> ruleset = new ArrayList<Rule>();
-        int len = hStr.length();
-        for (int i = 0; i < len; i += N) {
-            String ruleBitStr = hStr.substring(i, Math.min(len, i + N));
-            Rule generatedRule = new Rule();
-            generatedRule = generatedRule.getRuleFromString(ruleBitStr, attributes);
-            if (generatedRule != null && generatedRule.getRuleBitString().length() > 0) //maybe rule or hypothesis has no preconditions (000 1) or invalid postcondition (all ones)
-                ruleset.add(generatedRule);
-        }
-        return ruleset;
-    }
-
     /**
      * This method divides a bit string into parts based on attributes and attribute values
      * and prints it.
@@ -638,20 +694,15 @@ public class GA {
 
     /**
      * This method flips a bit in a particular bit string
-     * @param sb stringBuilder string
+     * @param bits the bit string (changed in place)
      * @return mutated bit string
      */
-    public String flipBit(StringBuilder sb){
+    public BitString flipBit(BitString bits){
         Random rand = new Random();
-        if(sb.length()> 0) { //random range must be > 0
-            int bitPos = rand.nextInt(sb.length());
-            if (sb.charAt(bitPos) == '0')
-                sb.setCharAt(bitPos, '1');
-            else
-                sb.setCharAt(bitPos, '0');
-        }
+        if(bits.length() > 0) //random range must be > 0
+            bits.flip(rand.nextInt(bits.length()));
 
-        return sb.toString();
+        return bits;
     }
 
     public int getRuleCount(){
@@ -0,0 +1,70 @@
+package org.fitz.ml.ga;
+
+import org.fitz.ml.Attributes;
+import org.fitz.ml.data.Fold;
+import org.fitz.ml.data.FoldLearner;
+import org.fitz.ml.data.FoldResult;
+
+import java.util.ArrayList;
+
+/**
+ * This class cross validates the genetic algorithm.
+ * Each fold runs its own GA on the training examples of the fold
+ * and reports the accuracy of the fittest hypothesis on the validation examples.
+ */
+public class GAFoldLearner implements FoldLearner {
+    private ArrayList<ArrayList<String>> instances;
+    private Attributes attributes;
+    private int min;
+    private int max;
+    private int p;
+    private double r;
+    private double m;
+    private int numGenerations;
+    private double fitnessThreshold;
+    private SelectionStrategy strategy;
+
+    /**
+     * @param instances all examples (not modified)
+     * @param attributes the attributes
+     * @param min the minimum number of rules per hypothesis
+     * @param max the maximum number of rules per hypothesis
+     * @param p the number of hypotheses per population
+     * @param r the replacement rate to be used for crossover
+     * @param m the mutation rate
+     * @param numGenerations the number of generations (0 or less to stop at the fitness threshold instead)
+     * @param fitnessThreshold the fitness threshold stopping criteria
+     * @param strategy the selection strategy (fitness proportionate, tournament, or rank)
+     */
+    public GAFoldLearner(ArrayList<ArrayList<String>> instances, Attributes attributes, int min, int max,
+                         int p, double r, double m, int numGenerations, double fitnessThreshold, SelectionStrategy strategy) {
+        this.instances = instances;
+        this.attributes = attributes;
+        this.min = min;
+        this.max = max;
+        this.p = p;
+        this.r = r;
+        this.m = m;
+        this.numGenerations = numGenerations;
+        this.fitnessThreshold = fitnessThreshold;
+        this.strategy = strategy;
+    }
+
+    @Override
+    public FoldResult learn(Fold fold) {
+        //the GA keeps its own lists, which hold the shared instances (the instances are not copied)
+        ArrayList<ArrayList<String>> validationSet = new ArrayList<ArrayList<String>>(fold.validation(instances));
+        GA ga = new GA();
+        ga.init(new ArrayList<ArrayList<String>>(fold.training(instances)), attributes, validationSet, min, max);
+
+        Hypothesis fittest;
+        if (numGenerations > 0)
+            fittest = ga.runGA(p, r, m, numGenerations, strategy);
+        else
+            fittest = ga.runGA(p, r, m, fitnessThreshold, strategy);
+
+        FoldResult result = new FoldResult(fold);
+        result.setAccuracy(fittest.correct(validationSet));
+        return result;
+    }
+}
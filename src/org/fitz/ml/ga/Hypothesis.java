@@ -2,6 +2,7 @@ package org.fitz.ml.ga;
 
 import org.fitz.ml.Attribute;
 import org.fitz.ml.Attributes;
+
 import java.util.ArrayList;
 
 /**
@@ -9,38 +10,78 @@ import java.util.ArrayList;
  * Created by FitzRoi on 3/29/16.
  */
 public class Hypothesis {
-    private ArrayList<Rule> ruleset;
+    private BitString bits; //the bit strings of the rules one after another
+    private ArrayList<Rule> ruleset; //decoded from bits when first needed
+    private RuleLayout layout;
     private Attributes attributes;
     private Attribute targetAttribute;
     private double fitness = 0; // the fitness of this hypothesis
     private double pr = 0; //the probability used for probabilistic selection
 
     public Hypothesis(ArrayList<Rule> ruleset, Attributes attributes){
-        this.ruleset = ruleset;
-        this.attributes = attributes;
+        this(ruleset, new RuleLayout(attributes));
+    }
+
+    public Hypothesis(ArrayList<Rule> ruleset, RuleLayout layout){
+        this.layout = layout;
+        this.attributes = layout.getAttributes();
+        this.targetAttribute = attributes.getTargetAttribute();
+        setRuleset(ruleset);
+    }
+
+    /**
+     * This method creates an hypothesis from a bit string without decoding its rules
+     * (they are decoded by getRuleset when needed). Rules with an undetermined postcondition
+     * or no preconditions are removed from the bit string.
+     * @param bits the bit strings of the rules one after another
+     * @param layout the fields of the attributes in a rule
+     */
+    public Hypothesis(BitString bits, RuleLayout layout){
+        this.layout = layout;
+        this.attributes = layout.getAttributes();
         this.targetAttribute = attributes.getTargetAttribute();
+        setBits(bits);
     }
 
     public ArrayList<Rule> getRuleset() {
+        if (ruleset == null)
+            ruleset = layout.decodeRules(bits);
         return ruleset;
     }
 
     public void setRuleset(ArrayList<Rule> ruleset) {
+        BitString bits = new BitString(ruleset.size() * layout.getLength());
+        for (Rule rule : ruleset)
+            bits.append(rule.getBits(), 0, rule.getBits().length());
+        this.bits = bits;
         this.ruleset = ruleset;
     }
 
+    public BitString getBits() {
+        return bits;
+    }
+
+    /**
+     * This method replaces the bit string of this hypothesis (for example after a mutation).
+     * Rules with an undetermined postcondition or no preconditions are removed.
+     * @param bits the bit strings of the rules one after another
+     */
+    public void setBits(BitString bits) {
+        this.bits = layout.validRules(bits);
+        this.ruleset = null;
+    }
+
     /**
-     * This method loops through the ruleset and generates a bitstring
+     * This method returns the bit string of this hypothesis as a String
      * @return the bitstring representation for this hypothesis
      */
     public String getBitString(){
-        String bitStr ="";
-        for(Rule rule : ruleset)
-            bitStr += rule.getRuleBitString();
-        return bitStr;
+        return bits.toString();
     }
 
-    public int size(){return ruleset.size();}
+    public int size(){
+        return (layout.getLength() > 0) ? bits.length() / layout.getLength() : 0;
+    }
 
     public double getFitness() {
         return fitness;
@@ -91,7 +132,7 @@ public class Hypothesis {
 
         for(ArrayList<String> example : instances) {
             boolean matched = false;
-            for (Rule rule : ruleset) {
+            for (Rule rule : getRuleset()) {
                 if (rule.isMatched(example, attributes)) {
                     matched = true;
                     postCondition = rule.getPostcondition();
@@ -116,6 +157,27 @@ public class Hypothesis {
             return (totalCorrect/instanceCount) * 100.0;
     }
 
+    public double computeFitness(InstanceBitmaps instances){
+        fitness = Math.pow(correct(instances), 2);
+        return fitness;
+    }
+
+    /**
+     * This method checks the number of instances classified correctly by this hypothesis.
+     * The rules are matched straight from the bit string of this hypothesis, so they are not decoded.
+     * @param instances the examples as bitmaps of attribute values
+     * @return the percentage of instances classified correctly
+     */
+    public double correct(InstanceBitmaps instances){
+        double instanceCount = instances.size();
+        double totalCorrect = instances.countCorrect(bits);
+
+        if(totalCorrect == 0)
+            return 0;
+        else
+            return (totalCorrect/instanceCount) * 100.0;
+    }
+
     public void printInstance(ArrayList<String> example){
         for(String attribute : example){
             System.out.print(attribute + "\t");
@@ -140,10 +202,9 @@ public class Hypothesis {
                 paddingLen = attrName.length();
         }
 
-        for (Rule rule : ruleset) {
+        for (int from = 0; from < bits.length(); from += layout.getLength()) {
             int index;
-            int end = 0;
-            String ruleBitStr = rule.getRuleBitString();
+            int end = from;
             for (int j = 0; j < attributes.getAttributes().size(); j++) {
                 Attribute attribute = attributes.get(j);
                 int bitStrSize;
@@ -154,7 +215,7 @@ public class Hypothesis {
 
                 index = end;
                 end = index + bitStrSize;
-                String attrStr = ruleBitStr.substring(index, end);
+                String attrStr = bits.toString(index, end);
 
                 String padding = new String(new char[paddingLen - attrStr.length()]).replace("\0", " ");
                 bitStrs += attrStr + padding;
@@ -0,0 +1,125 @@
+package org.fitz.ml.ga;
+
+import org.fitz.ml.Attribute;
+import org.fitz.ml.Attributes;
+import org.fitz.ml.data.Dataset;
+
+/**
+ * This class stores the instances of a dataset as one bitmap per attribute value (bit k of a
+ * bitmap is set if instance k has the value), in the same layout as the bit string of a rule:
+ * the bitmap of value i of attribute j is bitmaps[offset of j + i].
+ * An instance is matched by the field of an attribute in a rule if the one-hot bits of its value
+ * are inside the bits of the field, so the instances matched by a rule are found by OR-ing the
+ * bitmaps of the bits set in each field and AND-ing the fields, 64 instances per long word.
+ * A field without bits set puts no condition on its attribute, as in the decoded rules.
+ */
+public class InstanceBitmaps {
+    private RuleLayout layout;
+    private int size; //the number of instances
+    private int numWords;
+    private long bitmaps[][]; //one bitmap per bit of the preconditions of a rule (null for the target field)
+    private long targets[][]; //one bitmap per value of the target attribute
+    private long all[];       //the bits of all instances
+
+    /**
+     * @param instances the encoded instances
+     * @param layout the fields of the attributes in a rule
+     */
+    public InstanceBitmaps(Dataset instances, RuleLayout layout){
+        Attributes attributes = layout.getAttributes();
+        this.layout = layout;
+        this.size = instances.size();
+        this.numWords = (size + 63) >>> 6;
+        this.bitmaps = new long[layout.getLength()][];
+        this.all = new long[numWords];
+        for (int row = 0; row < size; row++)
+            all[row >>> 6] |= 1L << row;
+
+        for (int j = 0; j < attributes.getAttributes().size(); j++) {
+            long columnBitmaps[][] = encodeColumn(instances, j, attributes.get(j));
+            if (j == layout.getTargetIndex())
+                targets = columnBitmaps;
+            else
+                for (int i = 0; i < layout.getWidth(j); i++)
+                    bitmaps[layout.getOffset(j) + i] = columnBitmaps[i];
+        }
+    }
+
+    /**
+     * This method creates the bitmaps of the values of an attribute. A value is compared with the
+     * values of a rule the same way as Dataset.indexOfValue, so an instance with a value that is
+     * not one of the attribute values is not in any bitmap.
+     */
+    private long[][] encodeColumn(Dataset instances, int column, Attribute attribute){
+        String values[] = attribute.getValues();
+        long columnBitmaps[][] = new long[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            int code = Dataset.indexOfValue(attribute, values[i]);
+            columnBitmaps[i] = (code == i) ? new long[numWords] : columnBitmaps[code];
+        }
+        if (instances.isNumeric(column))
+            return columnBitmaps;
+
+        int codes[] = instances.getCodes(column);
+        for (int row = 0; row < size; row++) {
+            int code = codes[row];
+            if (code != Dataset.UNKNOWN && Dataset.indexOfValue(attribute, values[code]) == code)
+                columnBitmaps[code][row >>> 6] |= 1L << row;
+        }
+        return columnBitmaps;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    /**
+     * This method counts the instances classified correctly by the rules of an hypothesis.
+     * An instance is classified by the first rule that matches it, so each rule only
+     * looks at the instances the rules before it did not match.
+     * @param bits the bit string of the hypothesis
+     * @return the number of instances classified correctly
+     */
+    public int countCorrect(BitString bits){
+        int ruleLength = layout.getLength();
+        int targetIndex = layout.getTargetIndex();
+        int numAttributes = layout.getAttributes().getAttributes().size();
+        int terms[] = new int[ruleLength + numAttributes]; //for each constrained field: the number of bits set, then the bits
+        long remaining[] = all.clone();
+        int correct = 0;
+
+        for (int from = 0; ruleLength > 0 && from + ruleLength <= bits.length(); from += ruleLength) {
+            int postcondition = layout.getPostconditionIndex(bits, from);
+            if (postcondition < 0 || !layout.hasPreconditions(bits, from))
+                continue; //not a rule, as in Rule.decode
+
+            int numTerms = 0;
+            for (int j = 0; j < numAttributes; j++) {
+                if (j == targetIndex)
+                    continue;
+                int count = numTerms++;
+                for (int i = layout.getOffset(j); i < layout.getOffset(j) + layout.getWidth(j); i++)
+                    if (bits.get(from + i))
+                        terms[numTerms++] = i;
+                if (numTerms == count + 1)
+                    numTerms = count; //no bits set: no condition on this attribute
+                else
+                    terms[count] = numTerms - count - 1;
+            }
+
+            long target[] = targets[postcondition];
+            for (int w = 0; w < numWords; w++) {
+                long matched = remaining[w];
+                for (int t = 0; t < numTerms && matched != 0; t += terms[t] + 1) {
+                    long field = 0;
+                    for (int k = t + 1; k <= t + terms[t]; k++)
+                        field |= bitmaps[terms[k]][w];
+                    matched &= field;
+                }
+                correct += Long.bitCount(matched & target[w]);
+                remaining[w] &= ~matched;
+            }
+        }
+        return correct;
+    }
+}
@@ -4,6 +4,8 @@ package org.fitz.ml.ga;
 import org.fitz.ml.Attribute;
 import org.fitz.ml.AttributeType;
 import org.fitz.ml.Attributes;
+import org.fitz.ml.data.Dataset;
+import org.fitz.ml.data.DatasetReader;
 import org.fitz.util.Compute;
 import org.fitz.util.DataSorter;
 import org.fitz.util.Util;
@@ -12,7 +14,6 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 
 /**
  * This class is used to do pre-processing such as parsing the dataset file and attribute file
@@ -37,12 +38,10 @@ public class Preprocessor {
     public ArrayList<ArrayList<String>> parseDataset(String filename) {
         ArrayList<ArrayList<String>> examples = new ArrayList<ArrayList<String>>();
         try {
-            BufferedReader br = new BufferedReader(new FileReader(filename));
-            String line;
+            DatasetReader reader = new DatasetReader(filename);
             String vals[];
 
-            while ((line = br.readLine()) != null) {
-                vals = line.trim().split("\\s+");
+            while ((vals = reader.nextRow()) != null) {
                 if(vals.length == attributes.size()) {
                     ArrayList<String> row = new ArrayList<String>();
                     for(int i = 0; i < attributes.size(); i++){
@@ -55,6 +54,7 @@ public class Preprocessor {
                     examples.add(row);
                 }
             }
+            reader.close();
 
         } catch (IOException e) {
             System.out.println(e.getMessage());
@@ -66,6 +66,17 @@ public class Preprocessor {
         return examples;
     }
 
+    /**
+     * This method encodes a set of instances (for example after continuous attributes
+     * have been converted) so the learners can compare value codes instead of Strings.
+     * Values are matched ignoring case, as the rules of the GA match them
+     * @param instances the instances to encode
+     * @return the encoded dataset
+     */
+    public Dataset encode(ArrayList<ArrayList<String>> instances) {
+        return Dataset.encode(instances, attributes, true);
+    }
+
     /**
      * This function parses an attribute file and creates a list of attributes
      * @param filename the filename of the attribute file
@@ -151,39 +162,43 @@ public class Preprocessor {
 
     /**
      * This method is used to convert continuous-valued attributes to discrete attributes.
-     * It first sorts the data by the continuous attribute, finds a list of thresholds,
-     * and finds the best threshold using information gain.
+     * Each continuous column is parsed once, the examples are sorted by it (through an index array)
+     * and the best threshold is found with information gain in a single sweep over the sorted examples.
+     * The training examples are left sorted by the continuous attributes, as if the list had been sorted
+     * by each of them in turn.
      */
     public void processContinuousAttrs(){
-        DataSorter sorter = new DataSorter();
         ArrayList<Attribute> attributeList = attributes.getAttributes();
+        Attribute targetAttribute = attributes.getTargetAttribute();
+        int numClasses = targetAttribute.getValues().length;
+        int targets[] = Compute.getTargetCodes(instances, targetAttribute);
+        boolean isSorted = false;
+
+        //order of the examples after sorting by each continuous attribute
+        int order[] = new int[instances.size()];
+        for(int i = 0; i < order.length; i++)
+            order[i] = i;
 
         for(Attribute attribute : attributeList) {
-            Attributes thresholdAttr = new Attributes();
             if(attribute.getType() == AttributeType.CONTINUOUS) {
                 int attributeIndex = attribute.getIndex(); //specify the column index to sort by
-                sorter.setSortingIndex(attributeIndex);
-                Collections.sort(instances, sorter);
-                ArrayList<Double> thresholds = getContinuousThresholds(attributeIndex); //get a list of thresholds from data
-                String attrName = attribute.getName();
+                double values[] = new double[instances.size()];
+                for(int i = 0; i < values.length; i++)
+                    values[i] = Double.parseDouble(instances.get(i).get(attributeIndex));
 
-                //treat each threshold as an attribute to compute information gain
-                for (Double threshold : thresholds) {
-                    String attrVals[] = {threshold.toString()};
-                    Attribute attr = new Attribute(attrName, AttributeType.CONTINUOUS, attributeIndex, attrVals);
-                    thresholdAttr.add(attr);
-                }
+                DataSorter.sort(order, values); //stable, so ties keep the order of the previous sort
+                isSorted = true;
+                String attrName = attribute.getName();
 
-                //use information gain to determine the best threshold (attribute)
-                Attribute bestThreshold = Compute.getBestAttribute(instances, attributes.getTargetAttribute(), thresholdAttr);
+                //use information gain to determine the best threshold
+                Double bestThreshold = Compute.getBestThreshold(values, targets, numClasses, order);
 
                 //update attribute label (for example, from temperature to temperature>54)
                 Double thresholdVal = 0.0;
                 String newAttrName = attrName;
-                if(bestThreshold!= null && bestThreshold.getValues().length > 0) {
-                    String thresholdStr = bestThreshold.getValues()[0];
-                    thresholdVal = new Double(thresholdStr);
-                    newAttrName += ">" + thresholdStr;
+                if(bestThreshold != null) {
+                    thresholdVal = bestThreshold;
+                    newAttrName += ">" + bestThreshold.toString();
                 }
 
                 //convert continuous attribute to boolean
@@ -192,14 +207,11 @@ public class Preprocessor {
                 attribute.setValues(new String[]{"T", "F"});
 
                 //update this continuous attribute for all training examples to boolean
-                for(ArrayList<String> example : instances){
-                    String field = example.get(attributeIndex);
-                    Double fieldVal = new Double(field);
-                    if(fieldVal.compareTo(thresholdVal) > 0)
-                        example.set(attributeIndex, "T");
+                for(int i = 0; i < values.length; i++){
+                    if(Double.compare(values[i], thresholdVal) > 0)
+                        instances.get(i).set(attributeIndex, "T");
                     else
-                        example.set(attributeIndex, "F");
-
+                        instances.get(i).set(attributeIndex, "F");
                 }
 
                 //update this continuous attribute for all test examples to boolean
@@ -216,34 +228,15 @@ public class Preprocessor {
             }
         }
 
-    }
-
-    /**
-     * This method goes though the dataset (dataset should be sorted),
-     * and computes a list of thresholds.
-     * To do this, it identifies adjacent examples that differ in their target classification
-     * and generates a set of candidate thresholds midway between the corresponding values
-     * of the attribute.
-     * @param columnIndex an integer identifying the column or attribute
-     * @return an Arraylist of thresholds (double)
-     */
-    public ArrayList<Double> getContinuousThresholds(int columnIndex) {
-        ArrayList<Double> thresholds = new ArrayList<Double>();
-        int targetIndex = attributes.getTargetIndex();
-        for (int i = 1; i < instances.size(); i++) {
-            Double firstValue = new Double(instances.get(i - 1).get(columnIndex));
-            Double nextValue = new Double(instances.get(i).get(columnIndex));
-
-            String firstTarget = instances.get(i - 1).get(targetIndex);
-            String nextTarget = instances.get(i).get(targetIndex);
-
-            if (firstValue.compareTo(nextValue) != 0 && !firstTarget.equals(nextTarget)) {
-                thresholds.add((firstValue + nextValue) / 2);
-//                System.out.println(firstValue + "/" + nextValue + " = " + (firstValue + nextValue)/2);
-            }
+        //put the training examples in sorted order
+        if(isSorted) {
+            ArrayList<ArrayList<String>> sortedInstances = new ArrayList<ArrayList<String>>(instances.size());
+            for(int i : order)
+                sortedInstances.add(instances.get(i));
+            instances.clear();
+            instances.addAll(sortedInstances);
         }
 
-        return thresholds;
     }
 
     /**
@@ -13,7 +13,7 @@ import java.util.ArrayList;
 public class Rule {
     private ArrayList<Precondition> preconditions;
     private String postcondition;
-    private String ruleBitString = null;
+    private BitString bits = null; //the bit string the rule was created from
 
     public Rule(){
         this.preconditions = new ArrayList<Precondition>();
@@ -41,11 +41,15 @@ public class Rule {
     }
 
     public String getRuleBitString() {
-        return ruleBitString;
+        return (bits != null) ? bits.toString() : null;
     }
 
     public void setRuleBitString(String ruleBitString) {
-        this.ruleBitString = ruleBitString;
+        this.bits = (ruleBitString != null) ? BitString.valueOf(ruleBitString) : null;
+    }
+
+    public BitString getBits() {
+        return bits;
     }
 
 
@@ -56,35 +60,61 @@ public class Rule {
      * @return a rule
      */
     public Rule getRuleFromString(String bitStr, Attributes attributes){
-        Attribute targetAttribute = attributes.getTargetAttribute();
-            int index;
-            int end = 0;
-            Rule rule = new Rule();
-            for (int j = 0; j < attributes.getAttributes().size(); j++) {
-                Attribute attribute = attributes.get(j);
-                int bitStrSize;
-                if (j == targetAttribute.getIndex())
-                    bitStrSize = targetAttribute.getValues().length - 1; //for example use 0/1 for yes/no and exclude 11
-                else
-                    bitStrSize = attribute.getValues().length;
-
-                index = end;
-                end = index + bitStrSize;
-                String attrBitStr = bitStr.substring(index, end);
-                if (j == targetAttribute.getIndex())
-                    rule.setPostcondition(createPostCondition(attrBitStr, attribute));
-                else {
-                    Precondition precondition = createPrecondition(Precondition.conditionType.OR, attrBitStr, attribute);
-                    if (precondition != null)
-                        rule.addPrecondition(precondition);
-                }
-            }
-            //do not use rules with undetermined postcondition or no preconditions
-            if (rule.getPostcondition() != null && rule.getPreconditions().size() > 0) {
-                rule.setRuleBitString(bitStr);
-                return rule;
+        return decode(BitString.valueOf(bitStr), 0, new RuleLayout(attributes));
+    }
+
+    /**
+     * This method creates a rule with attribute names and values from the bits of a rule
+     * in the bit string of a rule or an hypothesis
+     * @param bits the bit string holding the rule
+     * @param from the first bit of the rule
+     * @param layout the fields of the attributes in the rule
+     * @return a rule, or null if the rule has an undetermined postcondition or no preconditions
+     */
+    public static Rule decode(BitString bits, int from, RuleLayout layout){
+        Attributes attributes = layout.getAttributes();
+        int postconditionIndex = layout.getPostconditionIndex(bits, from);
+        if (postconditionIndex < 0)
+            return null;
+
+        Rule rule = new Rule();
+        for (int j = 0; j < attributes.getAttributes().size(); j++) {
+            Attribute attribute = attributes.get(j);
+            int index = from + layout.getOffset(j);
+            if (j == layout.getTargetIndex())
+                rule.setPostcondition(attribute.getValues()[postconditionIndex]);
+            else {
+                Precondition precondition = createPrecondition(Precondition.conditionType.OR, bits, index, index + layout.getWidth(j), attribute);
+                if (precondition != null)
+                    rule.addPrecondition(precondition);
             }
-        return null;
+        }
+        //do not use rules with no preconditions
+        if (rule.getPreconditions().size() == 0)
+            return null;
+        rule.bits = new BitString(layout.getLength()).append(bits, from, from + layout.getLength());
+        return rule;
+    }
+
+    /**
+     * This method creates a precondition from the field of an attribute in a bit string
+     * @param type the type of precondition (OR or AND)
+     * @param bits the bit string holding the field
+     * @param from the first bit of the field
+     * @param to the end of the field (exclusive)
+     * @param attribute the attribute to use to create a statement of the for x = a
+     * @return a precondition of the form (x = a OR x = b) or (x=b AND x=c)
+     */
+    public static Precondition createPrecondition(Precondition.conditionType type, BitString bits, int from, int to, Attribute attribute){
+        Precondition precondition = new Precondition(type);
+        String attrValues[] = attribute.getValues();
+        for(int i = from; i < to; i++){
+            if(bits.get(i))
+                precondition.addCondition(new Statement(attribute.getName(), attrValues[i - from]));
+        }
+        if(precondition.getConditions().size() == 0)
+            return null;
+        return precondition;
     }
 
 
@@ -238,7 +268,7 @@ public class Rule {
 
             index = end;
             end = index + bitStrSize;
-            String attrStr = ruleBitString.substring(index, end);
+            String attrStr = bits.toString(index, end);
 
             String padding = new String(new char[paddingLen - attrStr.length()]).replace("\0", " ");
             bitStr += attrStr + padding;
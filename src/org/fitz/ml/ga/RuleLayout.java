@@ -0,0 +1,135 @@
+package org.fitz.ml.ga;
+
+import org.fitz.ml.Attributes;
+
+import java.util.ArrayList;
+
+/**
+ * This class describes where the attributes are in the bit string of a rule.
+ * Each attribute has a field of bits in the order of the attributes: one bit per value for the
+ * attributes of the preconditions, and the index of the value (in binary, using one bit less
+ * than the number of values) for the target attribute.
+ * The bit string of an hypothesis is the bit strings of its rules one after another.
+ */
+public class RuleLayout {
+    private Attributes attributes;
+    private int offsets[]; //the first bit of the field of each attribute
+    private int widths[];  //the number of bits of the field of each attribute
+    private int targetIndex;
+    private int length = 0; //the number of bits of a rule
+
+    public RuleLayout(Attributes attributes){
+        int n = attributes.getAttributes().size();
+        this.attributes = attributes;
+        this.targetIndex = attributes.getTargetAttribute().getIndex();
+        this.offsets = new int[n];
+        this.widths = new int[n];
+        for (int j = 0; j < n; j++) {
+            if (j == targetIndex)
+                widths[j] = attributes.get(j).getValues().length - 1; //for example use 0/1 for yes/no and exclude 11
+            else
+                widths[j] = attributes.get(j).getValues().length;
+            offsets[j] = length;
+            length += widths[j];
+        }
+    }
+
+    public Attributes getAttributes() {
+        return attributes;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getOffset(int attribute){
+        return offsets[attribute];
+    }
+
+    public int getWidth(int attribute){
+        return widths[attribute];
+    }
+
+    /**
+     * This method reads the postcondition of a rule
+     * @param bits the bit string holding the rule
+     * @param from the first bit of the rule
+     * @return the index of the value of the target attribute, or -1 if the bits do not match a value
+     */
+    public int getPostconditionIndex(BitString bits, int from){
+        int numValues = attributes.get(targetIndex).getValues().length;
+        int start = from + offsets[targetIndex];
+        if (widths[targetIndex] <= 0)
+            return -1;
+        long index = 0;
+        for (int i = start; i < start + widths[targetIndex]; i++) {
+            index = index * 2 + (bits.get(i) ? 1 : 0);
+            if (index >= numValues)
+                return -1;
+        }
+        return (int) index;
+    }
+
+    /**
+     * This method checks if a rule has at least one precondition (one bit set outside the target field)
+     * @param bits the bit string holding the rule
+     * @param from the first bit of the rule
+     * @return true if the rule has a precondition
+     */
+    public boolean hasPreconditions(BitString bits, int from){
+        int targetStart = from + offsets[targetIndex];
+        return bits.anySet(from, targetStart) || bits.anySet(targetStart + widths[targetIndex], from + length);
+    }
+
+    /**
+     * This method checks if a rule can be used: it must have a precondition and a postcondition
+     * @param bits the bit string holding the rule
+     * @param from the first bit of the rule
+     * @return true if the rule is valid
+     */
+    public boolean isValid(BitString bits, int from){
+        return getPostconditionIndex(bits, from) >= 0 && hasPreconditions(bits, from);
+    }
+
+    /**
+     * This method removes the rules that cannot be used from the bit string of an hypothesis
+     * @param bits the bit string of the hypothesis (whole rules)
+     * @return bits itself if all of its rules are valid, otherwise a bit string of the valid rules
+     */
+    public BitString validRules(BitString bits){
+        int n = bits.length();
+        if (length == 0)
+            return bits;
+        int from = 0;
+        while (from < n && isValid(bits, from))
+            from += length;
+        if (from >= n)
+            return bits;
+
+        BitString valid = new BitString(n - length);
+        valid.append(bits, 0, from);
+        for (from += length; from < n; from += length)
+            if (isValid(bits, from))
+                valid.append(bits, from, from + length);
+        return valid;
+    }
+
+    /**
+     * This method decodes the rules of the bit string of an hypothesis
+     * @param bits the bit string of the hypothesis
+     * @return the valid rules
+     */
+    public ArrayList<Rule> decodeRules(BitString bits){
+        ArrayList<Rule> ruleset = new ArrayList<Rule>();
+        for (int from = 0; length > 0 && from + length <= bits.length(); from += length) {
+            Rule rule = Rule.decode(bits, from, this);
+            if (rule != null)
+                ruleset.add(rule);
+        }
+        return ruleset;
+    }
+
+    public int getTargetIndex(){
+        return targetIndex;
+    }
+}
@@ -0,0 +1,136 @@
+package org.fitz.ml.main;
+
+import org.fitz.ml.backprop.Activation;
+import org.fitz.ml.backprop.Backpropagation;
+import org.fitz.ml.backprop.Classifier;
+import org.fitz.ml.backprop.Preprocessor;
+import org.fitz.ml.constants.AnnConstants;
+
+/**
+ * This class compares the activation functions of the network: the cost of each function
+ * on its own, and the training time and test accuracy of networks that use it on the datasets,
+ * relative to the exact sigmoid.
+ */
+public class BenchmarkActivations {
+    private static final Activation CONFIGURATIONS[][] = { //{hidden, output}
+            {Activation.SIGMOID, Activation.SIGMOID},
+            {Activation.SIGMOID_TABLE, Activation.SIGMOID_TABLE},
+            {Activation.SIGMOID_TABLE, Activation.SIGMOID},
+            {Activation.TANH, Activation.SIGMOID},
+            {Activation.RELU, Activation.SIGMOID}
+    };
+    private static double sink; //keeps the results of the kernels so the loops are not removed
+
+    public static void main(String[] args) {
+        double eta = 0.1;
+        int iterations = 1000;
+        int nHidden = AnnConstants.N_HIDDEN;
+        int runs = 5;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equalsIgnoreCase("-eta"))
+                eta = Double.parseDouble(args[i + 1]);
+            else if (args[i].equalsIgnoreCase("-iterations"))
+                iterations = Integer.parseInt(args[i + 1]);
+            else if (args[i].equalsIgnoreCase("-hidden"))
+                nHidden = Integer.parseInt(args[i + 1]);
+            else if (args[i].equalsIgnoreCase("-runs"))
+                runs = Integer.parseInt(args[i + 1]);
+        }
+
+        benchmarkKernels();
+
+        System.out.format("%nTraining: eta = %.2f, %d hidden unit(s), %d iteration(s), mean of %d run(s)%n", eta, nHidden, iterations, runs);
+        benchmarkDataset("TENNIS", AnnConstants.TENNIS_ATTR_FILE, AnnConstants.TENNIS_TRAIN_FILE, AnnConstants.TENNIS_TEST_FILE, eta, nHidden, iterations, runs);
+        benchmarkDataset("IRIS", AnnConstants.IRIS_ATTR_FILE, AnnConstants.IRIS_TRAIN_FILE, AnnConstants.IRIS_TEST_FILE, eta, nHidden, iterations, runs);
+    }
+
+    /**
+     * This method times each activation function on its own and measures
+     * how far each sigmoid approximation is from the exact sigmoid
+     */
+    public static void benchmarkKernels() {
+        int n = 1 << 16;
+        int repeats = 200;
+        double nets[] = new double[n];
+        double values[] = new double[n];
+        for (int i = 0; i < n; i++)
+            nets[i] = -20 + 40.0 * i / n;
+
+        System.out.println("Activation kernels (" + n * repeats + " evaluations each):");
+        System.out.format("%-15s %12s %15s%n", "ACTIVATION", "NS/EVAL", "MAX |ERROR|");
+        for (int pass = 0; pass < 2; pass++) { //the first pass warms up the JIT
+            for (Activation activation : Activation.values()) {
+                long start = System.nanoTime();
+                for (int r = 0; r < repeats; r++) {
+                    System.arraycopy(nets, 0, values, 0, n);
+                    activation.apply(values, 0, n);
+                    sink += values[n - 1 - r];
+                }
+                long time = System.nanoTime() - start;
+
+                double maxError = 0;
+                if (activation == Activation.SIGMOID_TABLE)
+                    for (int i = 0; i < n; i++)
+                        maxError = Math.max(maxError, Math.abs(activation.apply(nets[i]) - Activation.SIGMOID.apply(nets[i])));
+
+                if (pass == 1)
+                    System.out.format("%-15s %12.2f %15s%n", activation, (double) time / ((long) n * repeats),
+                            (activation == Activation.SIGMOID_TABLE) ? String.format("%.2e", maxError) : "-");
+            }
+        }
+    }
+
+    /**
+     * This method trains networks with each configuration of activation functions on a dataset
+     * and prints the mean training time and test accuracy relative to the exact sigmoid
+     */
+    public static void benchmarkDataset(String label, String attrFile, String trainingFile, String testFile,
+                                        double eta, int nHidden, int iterations, int runs) {
+        Preprocessor pp = new Preprocessor();
+        pp.parseAttributeFile(attrFile);
+        if (pp.isNumeric(pp.getInputAttributes())) {
+            pp.setExamples(pp.parseNumericDataset(trainingFile));
+            pp.setTestSet(pp.parseNumericDataset(testFile));
+        } else {
+            pp.setExamples(pp.parseDataset(trainingFile));
+            pp.setTestSet(pp.parseDataset(testFile));
+        }
+        int nIn = pp.getXSize();
+        int nOut = pp.getTSize() - 1; //exclude t0
+        Classifier classifier = new Classifier();
+
+        System.out.println("\n" + label + ":");
+        System.out.format("%-30s %12s %10s %12s %15s%n", "HIDDEN/OUTPUT", "TRAIN (MS)", "SPEEDUP", "TEST ACC", "ACC LOSS");
+
+        //warm up the JIT with every configuration before timing
+        for (Activation configuration[] : CONFIGURATIONS) {
+            Backpropagation warmUp = new Backpropagation();
+            warmUp.setActivations(configuration[0], configuration[1]);
+            warmUp.runBackprop(pp.getExamples(), eta, nIn, nOut, nHidden, Math.min(iterations, 200), AnnConstants.MOMENTUM, AnnConstants.NO_WEIGHT_DECAY);
+        }
+
+        double baselineTime = 0;
+        double baselineAccuracy = 0;
+        for (Activation configuration[] : CONFIGURATIONS) {
+            long time = 0;
+            double accuracy = 0;
+            for (int run = 0; run < runs; run++) {
+                Backpropagation bp = new Backpropagation();
+                bp.setActivations(configuration[0], configuration[1]);
+                long start = System.nanoTime();
+                bp.runBackprop(pp.getExamples(), eta, nIn, nOut, nHidden, iterations, AnnConstants.MOMENTUM, AnnConstants.NO_WEIGHT_DECAY);
+                time += System.nanoTime() - start;
+                accuracy += classifier.classify(pp.getTestSet(), pp.getTargetAttributes(), bp, AnnConstants.DO_NOT_PRINT_CLASSIFICATIONS, null);
+            }
+            double meanTime = time / 1e6 / runs;
+            accuracy /= runs;
+            if (configuration == CONFIGURATIONS[0]) {
+                baselineTime = meanTime;
+                baselineAccuracy = accuracy;
+            }
+            System.out.format("%-30s %12.1f %9.2fx %11.2f%% %14.2f%%%n", configuration[0] + "/" + configuration[1],
+                    meanTime, baselineTime / meanTime, accuracy, baselineAccuracy - accuracy);
+        }
+    }
+}
@@ -1,12 +1,23 @@
 package org.fitz.ml.main;
 
 import org.fitz.ml.Attributes;
+import org.fitz.ml.backprop.Activation;
+import org.fitz.ml.backprop.BackpropFoldLearner;
 import org.fitz.ml.backprop.Backpropagation;
 import org.fitz.ml.backprop.Classifier;
 import org.fitz.ml.backprop.Example;
+import org.fitz.ml.backprop.ExampleStream;
+import org.fitz.ml.backprop.FeedForwardNetwork;
+import org.fitz.ml.backprop.ModelFile;
+import org.fitz.ml.backprop.OptimizerType;
+import org.fitz.ml.backprop.ParallelTrainer;
 import org.fitz.ml.backprop.Preprocessor;
+import org.fitz.ml.backprop.TrainingMode;
 import org.fitz.ml.constants.AnnConstants;
+import org.fitz.ml.data.CrossValidation;
+import org.fitz.ml.data.FoldResult;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 /**
@@ -19,8 +30,22 @@ public class RunBackProp {
         boolean isCorruptData = false;
         double eta = AnnConstants.ETA;
         double momentum = AnnConstants.MOMENTUM;
-        int nHidden = AnnConstants.N_HIDDEN;
+        int hidden[] = null; //size of each hidden layer (from the attribute file or N_HIDDEN if not given)
         int iterations = AnnConstants.ITERATIONS;
+        int batchSize = AnnConstants.BATCH_SIZE;
+        int threads = AnnConstants.THREADS;
+        TrainingMode mode = TrainingMode.SYNCHRONOUS;
+        Activation hiddenActivation = Activation.SIGMOID;
+        Activation outputActivation = Activation.SIGMOID;
+        OptimizerType optimizerType = OptimizerType.SGD;
+        int patience = AnnConstants.NO_EARLY_STOPPING;
+        int validationInterval = 1;
+        int validationSample = 0;
+        boolean asyncValidation = false;
+        String saveFile = null;  //model file to save the trained network to
+        String loadFile = null;  //model file to load instead of training
+        boolean useCache = false; //parse the datasets through caches of their encoded examples
+        int streamChunkSize = 0;  //examples per chunk when streaming the training file (0 = load the whole file)
 
 
         //Select Identity dataset by default
@@ -85,7 +110,84 @@ public class RunBackProp {
                     }
                 } else if (args[i].equalsIgnoreCase("-hidden")) {
                     if (i + 1 < args.length) {
-                        nHidden = Integer.parseInt(args[i + 1]);
+                        hidden = new int[]{Integer.parseInt(args[i + 1])};
+                        i++;
+                    }
+                } else if (args[i].equalsIgnoreCase("-layers")) {
+                    if (i + 1 < args.length) { //e.g. 8,4 for two hidden layers
+                        String sizes[] = args[i + 1].split(",");
+                        hidden = new int[sizes.length];
+                        for (int j = 0; j < sizes.length; j++)
+                            hidden[j] = Integer.parseInt(sizes[j].trim());
+                        i++;
+                    }
+                } else if (args[i].equalsIgnoreCase("-batch")) {
+                    if (i + 1 < args.length) {
+                        batchSize = args[i + 1].equalsIgnoreCase("full") ? AnnConstants.FULL_BATCH : Integer.parseInt(args[i + 1]);
+                        i++;
+                    }
+                } else if (args[i].equalsIgnoreCase("-threads")) {
+                    if (i + 1 < args.length) {
+                        threads = Integer.parseInt(args[i + 1]);
+                        i++;
+                    }
+                } else if (args[i].equalsIgnoreCase("-mode")) {
+                    if (i + 1 < args.length) {
+                        mode = args[i + 1].equalsIgnoreCase("hogwild") ? TrainingMode.HOGWILD : TrainingMode.SYNCHRONOUS;
+                        i++;
+                    }
+                } else if (args[i].equalsIgnoreCase("-activation")) {
+                    if (i + 1 < args.length) { //<hidden>[,<output>]
+                        String names[] = args[i + 1].split(",");
+                        hiddenActivation = Activation.parse(names[0]);
+                        if (names.length > 1)
+                            outputActivation = Activation.parse(names[1]);
+                        i++;
+                    }
+                } else if (args[i].equalsIgnoreCase("-optimizer")) {
+                    if (i + 1 < args.length) {
+                        optimizerType = OptimizerType.parse(args[i + 1]);
+                        i++;
+                    }
+                } else if (args[i].equalsIgnoreCase("-patience")) { //-patience alone uses the default patience
+                    patience = AnnConstants.PATIENCE;
+                    if (i + 1 < args.length && args[i + 1].matches("\\d+")) {
+                        patience = Integer.parseInt(args[i + 1]);
+                        i++;
+                    }
+                } else if (args[i].equalsIgnoreCase("-validationInterval")) {
+                    if (i + 1 < args.length) {
+                        validationInterval = Integer.parseInt(args[i + 1]);
+                        i++;
+                    }
+                } else if (args[i].equalsIgnoreCase("-validationSample")) {
+                    if (i + 1 < args.length) {
+                        validationSample = Integer.parseInt(args[i + 1]);
+                        i++;
+                    }
+                } else if (args[i].equalsIgnoreCase("-asyncValidation")) {
+                    if (i + 1 < args.length) {
+                        asyncValidation = Boolean.parseBoolean(args[i + 1]);
+                        i++;
+                    }
+                } else if (args[i].equalsIgnoreCase("-save")) {
+                    if (i + 1 < args.length) {
+                        saveFile = args[i + 1];
+                        i++;
+                    }
+                } else if (args[i].equalsIgnoreCase("-load")) {
+                    if (i + 1 < args.length) {
+                        loadFile = args[i + 1];
+                        i++;
+                    }
+                } else if (args[i].equalsIgnoreCase("-stream")) {
+                    if (i + 1 < args.length) {
+                        streamChunkSize = Integer.parseInt(args[i + 1]);
+                        i++;
+                    }
+                } else if (args[i].equalsIgnoreCase("-cache")) {
+                    if (i + 1 < args.length) {
+                        useCache = Boolean.parseBoolean(args[i + 1]);
                         i++;
                     }
                 }
@@ -96,8 +198,17 @@ public class RunBackProp {
         //create a preprocessor to process datasets
         Preprocessor pp = new Preprocessor();
         pp.parseAttributeFile(attrFile);
-
-        if (pp.isNumeric(pp.getInputAttributes())) {
+        if (hidden == null)
+            hidden = (pp.getHiddenLayers() != null) ? pp.getHiddenLayers() : new int[]{AnnConstants.N_HIDDEN};
+
+        boolean isStreaming = streamChunkSize > 0 && loadFile == null && !isCorruptData;
+        if (isStreaming) { //the training examples are read from the file while training, only the test set is loaded
+            pp.setExamples(new ArrayList<Example>());
+            pp.setTestSet(pp.isNumeric(pp.getInputAttributes()) ? pp.parseNumericDataset(testFile) : pp.parseDataset(testFile));
+        } else if (useCache) {
+            pp.setExamples(pp.parseCachedDataset(trainingFile));
+            pp.setTestSet(pp.parseCachedDataset(testFile));
+        } else if (pp.isNumeric(pp.getInputAttributes())) {
             pp.setExamples(pp.parseNumericDataset(trainingFile));
             pp.setTestSet(pp.parseNumericDataset(testFile));
         } else { //requires special handling of 1-of-n
@@ -112,29 +223,92 @@ public class RunBackProp {
         int nOut = pp.getTSize() - 1; //exclude t0
         double accuracy;
 
+        //the training settings shared by every network trained below
+        Backpropagation settings = new Backpropagation();
+        settings.setBatchSize(batchSize);
+        settings.setActivations(hiddenActivation, outputActivation);
+        settings.setOptimizer(optimizerType);
+        settings.setPatience(patience);
+        settings.setValidation(validationInterval, validationSample, asyncValidation);
 
         if (isCorruptData) { //conduct special experiment by corrupting training data
-            runCorruptDataExp(pp, eta, nIn, nOut, nHidden, iterations, momentum, AnnConstants.DONT_USE_VALIDATION_SET);
+            runCorruptDataExp(pp, eta, nIn, nOut, hidden, iterations, momentum, threads, settings, AnnConstants.DONT_USE_VALIDATION_SET);
 
             //reload file since data corrupted
             System.out.print("Now reloading data to run experiment with validation set...\n");
             pp.setExamples(pp.parseDataset(trainingFile));
-            runCorruptDataExp(pp, eta, nIn, nOut, nHidden, iterations, momentum, AnnConstants.USE_VALIDATION_SET);
+            runCorruptDataExp(pp, eta, nIn, nOut, hidden, iterations, momentum, threads, settings, AnnConstants.USE_VALIDATION_SET);
 
         } else {
-            Backpropagation bp = new Backpropagation();
-            bp.runBackprop(examples, eta, nIn, nOut, nHidden, iterations, momentum, AnnConstants.NO_WEIGHT_DECAY);
+            FeedForwardNetwork network;
+            if (loadFile != null) { //score with a saved network instead of training
+                try {
+                    network = ModelFile.load(loadFile);
+                    System.out.println("Loaded network from " + loadFile);
+                } catch (IOException e) {
+                    System.out.println(e.getMessage());
+                    e.printStackTrace();
+                    return;
+                }
+                if (network.getFanIn(0) != nIn || network.getNumUnits(network.getOutputLayerIndex()) != nOut) {
+                    System.out.println("The network in " + loadFile + " does not match the attributes of " + experiment);
+                    return;
+                }
+            } else {
+                Backpropagation bp;
+                if (isStreaming) {
+                    ExampleStream stream = new ExampleStream(trainingFile, pp.getEncoder(), streamChunkSize);
+                    bp = new Backpropagation();
+                    bp.copySettings(settings);
+                    long start = System.nanoTime();
+                    try {
+                        bp.runBackprop(stream, eta, nIn, nOut, hidden, iterations, momentum, AnnConstants.NO_WEIGHT_DECAY);
+                    } catch (IOException e) {
+                        System.out.println(e.getMessage());
+                        e.printStackTrace();
+                        return;
+                    }
+                    System.out.format("Streamed %d example(s) in chunks of %d in %.2fs%n", stream.getExamplesRead(), streamChunkSize,
+                            (System.nanoTime() - start) / 1e9);
+                } else if (threads > 1) { //train on several threads and report the throughput
+                    ParallelTrainer trainer = new ParallelTrainer(threads, mode);
+                    if (batchSize != AnnConstants.BATCH_SIZE)
+                        trainer.setBatchSize(batchSize);
+                    trainer.setActivations(hiddenActivation, outputActivation);
+                    trainer.setOptimizer(optimizerType);
+                    bp = trainer.runBackprop(examples, eta, nIn, nOut, hidden, iterations, momentum, AnnConstants.NO_WEIGHT_DECAY);
+                    System.out.format("Trained with %d thread(s) (%s): %d example(s) in %.2fs = %.0f examples/sec%n", threads, mode,
+                            trainer.getExamplesProcessed(), trainer.getTrainingTime(), trainer.getExamplesPerSecond());
+                } else {
+                    bp = new Backpropagation();
+                    bp.copySettings(settings);
+                    bp.runBackprop(examples, eta, nIn, nOut, hidden, iterations, momentum, AnnConstants.NO_WEIGHT_DECAY);
+                }
+                network = bp.getNetwork();
+                if (saveFile != null) {
+                    try {
+                        ModelFile.save(network, saveFile);
+                        System.out.println("Saved network to " + saveFile);
+                    } catch (IOException e) {
+                        System.out.println(e.getMessage());
+                        e.printStackTrace();
+                    }
+                }
+            }
+
             Classifier classifier = new Classifier();
-            //only training set available for testIdentity
+            //only training set available for testIdentity (its test file is the training file)
             if (experiment.equals("testIdentity"))
-                classifier.classify(examples, targetAttributes, bp, AnnConstants.DO_PRINT_CLASSIFICATIONS, experiment.toUpperCase() + " TRAINING SET");
+                classifier.classify(isStreaming ? testSet : examples, targetAttributes, network, AnnConstants.DO_PRINT_CLASSIFICATIONS, experiment.toUpperCase() + " TRAINING SET");
             else {
-                //classify training set
-                accuracy = classifier.classify(examples, targetAttributes, bp, AnnConstants.DO_NOT_PRINT_CLASSIFICATIONS, experiment.toUpperCase() + " TRAINING SET");
-                System.out.print("ACCURACY FOR " + experiment.toUpperCase() + " TRAINING SET: " + accuracy + "%\n");
+                //classify training set (not loaded when streamed)
+                if (!isStreaming) {
+                    accuracy = classifier.classify(examples, targetAttributes, network, AnnConstants.DO_NOT_PRINT_CLASSIFICATIONS, experiment.toUpperCase() + " TRAINING SET");
+                    System.out.print("ACCURACY FOR " + experiment.toUpperCase() + " TRAINING SET: " + accuracy + "%\n");
+                }
 
                 //classify test set
-                accuracy = classifier.classify(testSet, targetAttributes, bp, AnnConstants.DO_NOT_PRINT_CLASSIFICATIONS, experiment.toUpperCase() + " TEST SET");
+                accuracy = classifier.classify(testSet, targetAttributes, network, AnnConstants.DO_NOT_PRINT_CLASSIFICATIONS, experiment.toUpperCase() + " TEST SET");
                 System.out.print("ACCURACY FOR " + experiment.toUpperCase() + " TEST SET: " + accuracy + "%\n");
             }
         }
@@ -146,13 +320,17 @@ public class RunBackProp {
      * @param eta the learning rate
      * @param nIn the size of the input vector
      * @param nOut the number of output units
-     * @param nHidden the number of hidden units
+     * @param hidden the number of units in each hidden layer
      * @param iterations the number of iterations
      * @param momentum the momentum
+     * @param threads the number of folds trained at the same time
+     * @param settings the training settings (batch size, activation functions, optimizer, early stopping and validation)
      * @param useValidationSet boolean to specify whether to use validation set
      */
-    public static void runCorruptDataExp(Preprocessor pp, double eta, int nIn, int nOut, int nHidden, int iterations, double momentum, boolean useValidationSet) {
+    public static void runCorruptDataExp(Preprocessor pp, double eta, int nIn, int nOut, int hidden[], int iterations, double momentum, int threads,
+                                         Backpropagation settings, boolean useValidationSet) {
         Backpropagation bp = new Backpropagation();
+        bp.copySettings(settings);
         ArrayList<Integer> uncorruptedIndexes = new ArrayList<Integer>();
         ArrayList<Example> examples = pp.getExamples();
         Attributes targetAttributes = pp.getTargetAttributes();
@@ -165,18 +343,16 @@ public class RunBackProp {
 
             //first run backprop and find ideal number of iterations (ie. iterations that yield smallest error on validation set)
             int k = AnnConstants.K;
-            int sumIterations = 0;
             System.out.print("Now determining average iterations using " + k +"-fold cross validation\n");
             System.out.print("Note: This may take a few minutes ...\n");
-            //find the average number of iterations
-            for (int i = 0; i < k; i++) {
-                pp.selectValidationSet(i); //separate examples into validation set and other set
-                bp.runKFoldBackprop(pp.allExceptValidationSet(), eta, nIn, nOut, nHidden, AnnConstants.MAX_ITERATIONS, momentum, pp.getValidationSet(), AnnConstants.NO_WEIGHT_DECAY);
-                sumIterations += bp.getOptimalIterations();
-            }
-            System.out.print(pp.getValidationSet().size() +" example(s) in each fold of validation set; " +pp.allExceptValidationSet().size() +" remaining for training\n");
-
-            idealIterations = sumIterations / k;
+            //find the average number of iterations, training the folds concurrently
+            CrossValidation crossValidation = new CrossValidation(examples.size(), k);
+            BackpropFoldLearner foldLearner = new BackpropFoldLearner(examples, eta, nIn, nOut, hidden, AnnConstants.MAX_ITERATIONS, momentum, settings, AnnConstants.NO_WEIGHT_DECAY);
+            ArrayList<FoldResult> results = crossValidation.run(foldLearner, threads);
+            for (FoldResult result : results)
+                System.out.println(result);
+
+            idealIterations = CrossValidation.getAverageOptimalIterations(results);
             System.out.print("Average iterations using "+ k +"-fold validation = " + idealIterations + "\n\n");
         }
 
@@ -185,7 +361,7 @@ public class RunBackProp {
 
         //run experiment with 0% corrupted data
         System.out.print("======== Running experiment with 0% Corrupted Data =====\n");
-        bp.runBackprop(examples, eta, nIn, nOut, nHidden, idealIterations, momentum, AnnConstants.NO_WEIGHT_DECAY);
+        bp.runBackprop(examples, eta, nIn, nOut, hidden, idealIterations, momentum, AnnConstants.NO_WEIGHT_DECAY);
 
         Classifier classifier = new Classifier();
         double accuracy = classifier.classify(pp.getTestSet(), targetAttributes, bp, AnnConstants.DO_NOT_PRINT_CLASSIFICATIONS, null);
@@ -220,7 +396,7 @@ public class RunBackProp {
 
 
                 //run backprop with ideal iterations to get the best weights instead of saving the weights
-                bp.runBackprop(examples, eta, nIn, nOut, nHidden, idealIterations, momentum, AnnConstants.NO_WEIGHT_DECAY);
+                bp.runBackprop(examples, eta, nIn, nOut, hidden, idealIterations, momentum, AnnConstants.NO_WEIGHT_DECAY);
                 accuracy = classifier.classify(pp.getTestSet(), targetAttributes, bp, AnnConstants.DO_NOT_PRINT_CLASSIFICATIONS, null);
                 System.out.print("ACCURACY: " + accuracy + "%\n");
             }
@@ -2,9 +2,13 @@ package org.fitz.ml.main;
 
 import org.fitz.ml.Attributes;
 import org.fitz.ml.constants.DtreeConstants;
+import org.fitz.ml.data.CrossValidation;
+import org.fitz.ml.data.Dataset;
+import org.fitz.ml.data.FoldResult;
 import org.fitz.ml.dtree.*;
 
 import java.util.ArrayList;
+import java.util.Random;
 
 /** This is the main class for doing pre-processing and
  * running the ID3 algorithm.
@@ -16,6 +20,8 @@ public class RunDTree {
         boolean isPrintBeforeProcessing = false;
         boolean isPrintAfterProcessing = false;
         boolean isCorruptData = false;
+        int threads = DtreeConstants.PARALLELISM;
+        int folds = 0; //number of folds for cross validation (0 = no cross validation)
 
         //select tennis dataset by default
         String trainingFile = DtreeConstants.TENNIS_TRAIN_FILE;
@@ -67,6 +73,16 @@ public class RunDTree {
                     isPrintBeforeProcessing = true;
                 } else if (args[i].equals("-a")) {
                     isPrintAfterProcessing = true;
+                } else if (args[i].equals("-threads")) {
+                    if (i + 1 < args.length) {
+                        threads = Integer.parseInt(args[i + 1]);
+                        i++;
+                    }
+                } else if (args[i].equals("-folds")) {
+                    if (i + 1 < args.length) {
+                        folds = Integer.parseInt(args[i + 1]);
+                        i++;
+                    }
                 }
             }
         }
@@ -94,15 +110,21 @@ public class RunDTree {
 
 
         if (isCorruptData) { //conduct special experiment by corrupting training data
-            runCorruptDataExp(pp);
+            runCorruptDataExp(pp, threads);
+        }
+
+        else if (folds > 1) { //cross validate ID3 on the training data
+            runCrossValidation(pp, folds, threads);
         }
 
         else { //run regular experiments
             Learner learner = new Learner();
             learner.setAttributes(pp.getAttributes());
+            learner.setParallelism(threads);
             Tree tree = learner.getTree();
 
-            Node root = learner.ID3(pp.getInstances(), pp.getTargetAttribute(), pp.getOtherAttributes());
+            Dataset trainingData = pp.encode(pp.getInstances()); //encode the instances once for the learner
+            Node root = learner.ID3(trainingData, pp.getTargetAttribute(), pp.getOtherAttributes());
             tree.setRoot(root);
             tree.deriveRules();
 
@@ -119,14 +141,32 @@ public class RunDTree {
             tree.tryPostRulePruning(pp.getValidationSet(), pp.getAttributes());
 
             Classifier classifier = new Classifier(pp.getAttributes());
-            classifier.classify(pp.getInstances(), tree.getRules(), " TRAINING SET ");
-//            classifier.classify(pp.getValidationSet(), tree.getRules(), " VALIDATION SET ");
-            classifier.classify(pp.getTestSet(), tree.getRules(), " TEST SET ");
+            classifier.classify(trainingData, tree.getRules(), " TRAINING SET ");
+//            classifier.classify(pp.encode(pp.getValidationSet()), tree.getRules(), " VALIDATION SET ");
+            classifier.classify(pp.encode(pp.getTestSet()), tree.getRules(), " TEST SET ");
         }
         System.out.print("\n");
 
     }
 
+    /**
+     * This method runs a k-fold cross validation of the ID3 algorithm on the training instances.
+     * The instances are encoded once and the folds are trained concurrently on row indexes of the shared dataset.
+     * @param pp a preprocessor containing the instances and attributes
+     * @param k the number of folds
+     * @param threads the number of folds trained at the same time
+     */
+    public static void runCrossValidation(Preprocessor pp, int k, int threads) {
+        Dataset dataset = pp.encode(pp.getInstances());
+        CrossValidation crossValidation = new CrossValidation(dataset.size(), k, new Random());
+        ArrayList<FoldResult> results = crossValidation.run(new DTreeFoldLearner(dataset, pp.getAttributes()), threads);
+
+        System.out.print("\n================ " + k + "-FOLD CROSS VALIDATION ================\n");
+        for (FoldResult result : results)
+            System.out.println(result);
+        System.out.format("MEAN ACCURACY: %.2f%%%n", CrossValidation.getMeanAccuracy(results));
+    }
+
     /**
      * This is a special method to conduct an experiment by corrupting the training data
      * (ie changing the class). Here, we randomly assign a new class from the remaining classes.
@@ -135,8 +175,9 @@ public class RunDTree {
      *
      * @param pp a preprocessor containing the instances, testset,
      *           validationset (for post-rule pruning) and attributes
+     * @param threads the number of threads used to search for the best split
      */
-    public static void runCorruptDataExp(Preprocessor pp) {
+    public static void runCorruptDataExp(Preprocessor pp, int threads) {
         ArrayList<Integer> uncorruptedIndexes = new ArrayList<Integer>();
         ArrayList<ArrayList<String>> dataset = pp.getInstances();
         Attributes attributes = pp.getAttributes();
@@ -144,6 +185,7 @@ public class RunDTree {
 
         Learner learner = new Learner();
         learner.setAttributes(pp.getAttributes());
+        learner.setParallelism(threads);
         Tree tree = learner.getTree();
         Node root;
 
@@ -151,7 +193,7 @@ public class RunDTree {
 
         //run experiment with 0% corrupted data
         System.out.print("======== Running experiment with 0% Corrupted Data =====\n");
-        root = learner.ID3(pp.getInstances(), pp.getTargetAttribute(), pp.getOtherAttributes());
+        root = learner.ID3(pp.encode(pp.getInstances()), pp.getTargetAttribute(), pp.getOtherAttributes());
         tree.setRoot(root);
         tree.deriveRules();
         tree.printRules();
@@ -183,7 +225,7 @@ public class RunDTree {
                 //run experiment with incrementally corrupted data
 
                 System.out.println("\n===== Running experiment with " + ((i + 1) * increments) + " corrupted instance(s) =====");
-                root = learner.ID3(pp.getInstances(), pp.getTargetAttribute(), pp.getOtherAttributes());
+                root = learner.ID3(pp.encode(pp.getInstances()), pp.getTargetAttribute(), pp.getOtherAttributes()); //re-encode the corrupted instances
                 tree.setRoot(root);
                 tree.deriveRules();
                 tree.tryPostRulePruning(pp.getValidationSet(), pp.getAttributes());
@@ -1,11 +1,17 @@
 package org.fitz.ml.main;
 
 import org.fitz.ml.constants.GAconstants;
+import org.fitz.ml.data.CrossValidation;
+import org.fitz.ml.data.FoldResult;
 import org.fitz.ml.ga.GA;
+import org.fitz.ml.ga.GAFoldLearner;
 import org.fitz.ml.ga.Hypothesis;
 import org.fitz.ml.ga.Preprocessor;
 import org.fitz.ml.ga.SelectionStrategy;
 
+import java.util.ArrayList;
+import java.util.Random;
+
 /**
  * This is the main class for running the algorithm
  * Created by FitzRoi on 3/28/16.
@@ -27,6 +33,10 @@ public class RunGA {
         double m = GAconstants.MUTATION_RATE; //% hypotheses to mutate in each step
         double fitnessThreshold = GAconstants.FITNESS_THRESHOLD;
         SelectionStrategy strategy = SelectionStrategy.RANK;
+        int folds = 0; //number of folds for cross validation (0 = no cross validation)
+        int threads = GAconstants.THREADS;
+        boolean virtualThreads = false; //evaluate each hypothesis on its own virtual thread
+        boolean printThroughput = false; //print the fitness evaluation throughput of each generation
 
 
         if (args.length > 0) {
@@ -82,6 +92,22 @@ public class RunGA {
                 } else if (args[i].equalsIgnoreCase("-f")) { //accept fitnessThreshold as percent and square it
                     fitnessThreshold = Math.pow(Double.parseDouble(args[i + 1]) * 100.0, 2);
                     i++;
+                } else if (args[i].equalsIgnoreCase("-folds")) {
+                    folds = Integer.parseInt(args[i + 1]);
+                    i++;
+                } else if (args[i].equalsIgnoreCase("-threads")) {
+                    threads = Integer.parseInt(args[i + 1]);
+                    i++;
+                } else if (args[i].equalsIgnoreCase("-virtual")) {
+                    if (i + 1 < args.length) {
+                        virtualThreads = Boolean.parseBoolean(args[i + 1]);
+                        i++;
+                    }
+                } else if (args[i].equalsIgnoreCase("-throughput")) {
+                    if (i + 1 < args.length) {
+                        printThroughput = Boolean.parseBoolean(args[i + 1]);
+                        i++;
+                    }
                 } else if (args[i].equalsIgnoreCase("-s")) {
                     switch (Integer.parseInt(args[i + 1])) {
                         case 1:
@@ -110,6 +136,9 @@ public class RunGA {
                 pp.getTestSet(),
                 x,
                 y);
+        genAlgo.setPrintThroughput(printThroughput);
+        if (folds <= 1) //compute the fitness of the hypotheses on the threads (cross validation runs the folds on them instead)
+            genAlgo.setEvaluationThreads(threads, virtualThreads);
 
         //run the selected experiment
         System.out.println("\n=== RUNNING " + experiment + " EXPERIMENT === \n");
@@ -118,6 +147,14 @@ public class RunGA {
             testIrisSelection(genAlgo, p, r, m);
         } else if (experiment.equalsIgnoreCase("testIrisReplacement")) {
             testIrisReplacement(genAlgo, p, m, g);
+        } else if (folds > 1) {
+            GAFoldLearner foldLearner = new GAFoldLearner(pp.getInstances(), pp.getAttributes(), x, y, p, r, m, g, fitnessThreshold, strategy);
+            ArrayList<FoldResult> results = new CrossValidation(pp.getInstances().size(), folds, new Random()).run(foldLearner, threads);
+
+            System.out.println("\n=====" + folds + "-FOLD CROSS VALIDATION (" + experiment + ")=====");
+            for (FoldResult result : results)
+                System.out.println(result);
+            System.out.format("MEAN ACCURACY: %.2f%%%n", CrossValidation.getMeanAccuracy(results));
         } else {
             Hypothesis fittest;
             if (g > 0) //if number of generation specified (>0), use this as stopping criterion
@@ -134,6 +171,7 @@ public class RunGA {
             System.out.print("\nACCURACY ON TEST SET (" + experiment + "): ");
             System.out.print(fittest.correct(pp.getTestSet()) + "%\n");
         }
+        genAlgo.shutdown();
 
     }
 
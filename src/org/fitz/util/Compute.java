@@ -3,16 +3,32 @@ package org.fitz.util;
 import org.fitz.ml.Attribute;
 import org.fitz.ml.AttributeType;
 import org.fitz.ml.Attributes;
+import org.fitz.ml.data.Dataset;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /** This class is used to perform computations such as entropy and information gain
+ * Entropy and gain are computed from contingency tables (attribute value x class counts)
+ * that are filled in a single pass over the examples, so no subsets of examples are created.
  * Created by FitzRoi on 2/19/16.
  */
 public class Compute {
+    private static final double LN2 = Math.log(2);
+    private static final int LOG_TABLE_SIZE = 1 << 16;
+    private static final double NLOG2N[] = new double[LOG_TABLE_SIZE]; //cached values of n*log2(n) for small counts
+    private static final double ZERO_TOLERANCE = 1e-12; //entropies and gains closer to 0 are rounding residue
+
+    static {
+        for (int n = 1; n < LOG_TABLE_SIZE; n++)
+            NLOG2N[n] = n * (Math.log(n) / LN2);
+    }
+
     /**
      * This method computes the entropy of a set of examples
      * @param S the set of instances
@@ -20,25 +36,56 @@ public class Compute {
      * @return the entropy
      */
     public static Double entropy(ArrayList<ArrayList<String>> S, Attribute targetAttribute) {
-        Double sum = 0.0;
-        Double sSize = (double) S.size();
-
-        if(S.size() > 0) {
-            for (String ci : targetAttribute.getValues()) {
-                Double pi;  //proportion of S belonging to class i
-                Double count = 0.0;
-                for (ArrayList<String> example : S) {
-                    if (example.get(targetAttribute.getIndex()).equals(ci)) { //row[i].attribute[attrIndex]
-                        count++;
-                    }
-                }
-                pi = count / sSize;
-                if (pi > 0)
-                    sum += (-(pi * (Math.log(pi) / Math.log(2)))); //log2(n) = log(n)/log(2)
-            }
+        int classCounts[] = new int[targetAttribute.getValues().length];
+        countClasses(S, targetAttribute, classCounts);
+        return entropy(classCounts, 0, classCounts.length, S.size());
+    }
+
+    /**
+     * This method computes the entropy of a set of examples from the number of examples in each class
+     * using Entropy(S) = ∑ -pi * log2(pi) = (k * log2(|S|) - ∑ ci * log2(ci)) / |S|
+     * where ci is the count of class i and k = ∑ ci
+     * @param counts the class counts
+     * @param offset the position of the first class count in counts
+     * @param numClasses the number of classes
+     * @param total the number of examples in the set (|S|)
+     * @return the entropy
+     */
+    public static double entropy(int counts[], int offset, int numClasses, int total) {
+        if (total == 0)
+            return 0;
+
+        double sum = 0;
+        int k = 0;
+        for (int i = offset; i < offset + numClasses; i++) {
+            sum += nLog2n(counts[i]);
+            k += counts[i];
         }
+        double log2Total = (total < LOG_TABLE_SIZE) ? NLOG2N[total] / total : Math.log(total) / LN2;
+        return roundToZero((k * log2Total - sum) / total);
+    }
 
-        return sum;
+    /**
+     * This method rounds a value that is 0 up to rounding errors to exactly 0.
+     * The count-table formulas leave a residue of about 1e-16 where summing -pi * log2(pi)
+     * gives exactly 0 (e.g. the gain of an attribute whose values all have the same class
+     * distribution), and the learners stop splitting when the best gain is exactly 0.
+     * @param value an entropy or a gain
+     * @return 0 if the value is within ZERO_TOLERANCE of 0, otherwise the value
+     */
+    private static double roundToZero(double value) {
+        return (Math.abs(value) < ZERO_TOLERANCE) ? 0 : value;
+    }
+
+    /**
+     * This method returns n * log2(n) using a lookup table for small counts
+     * @param n the count
+     * @return n * log2(n) (0 for n = 0)
+     */
+    public static double nLog2n(int n) {
+        if (n < LOG_TABLE_SIZE)
+            return NLOG2N[n];
+        return n * (Math.log(n) / LN2);
     }
 
     /**
@@ -55,16 +102,72 @@ public class Compute {
      * @return the information gain
      */
     public static Double gain(ArrayList<ArrayList<String>> S, Attribute A, Attribute targetAttribute) {
-        Double runningSum = 0.0;
-        ArrayList<ArrayList<String>> sv;
+        return gain(S, A, targetAttribute, entropy(S, targetAttribute));
+    }
+
+    /**
+     * This method computes gain(S,A) given Entropy(S) by filling a table of
+     * (attribute value x class) counts in one pass over S
+     * @param S a set of examples
+     * @param A the attribute in question
+     * @param targetAttribute the target concept
+     * @param entropyS the entropy of S
+     * @return the information gain
+     */
+    private static double gain(ArrayList<ArrayList<String>> S, Attribute A, Attribute targetAttribute, double entropyS) {
         String v[] = A.getValues();
-        for (String vi : v) {
-            sv = Sv(S, vi, A.getIndex(), A.getType());
-            Double svDivS = ((double) sv.size() / (double) S.size()); // |sv| / |s|
-            runningSum += svDivS * entropy(sv, targetAttribute);
+        String targetVals[] = targetAttribute.getValues();
+        int numClasses = targetVals.length;
+        int counts[] = new int[v.length * numClasses];
+        int valueTotals[] = new int[v.length]; // |Sv|
+        int attrIndex = A.getIndex();
+        int targetIndex = targetAttribute.getIndex();
+
+        if (A.getType() == AttributeType.CONTINUOUS) {
+            double thresholds[] = parseThresholds(v);
+            for (ArrayList<String> row : S) {
+                double attr = Double.parseDouble(row.get(attrIndex));
+                int ci = indexOf(targetVals, row.get(targetIndex));
+                for (int vi = 0; vi < thresholds.length; vi++) {
+                    if (Double.compare(attr, thresholds[vi]) < 0) { //A < c
+                        valueTotals[vi]++;
+                        if (ci >= 0)
+                            counts[vi * numClasses + ci]++;
+                    }
+                }
+            }
         }
-        return entropy(S, targetAttribute) - runningSum;
+        else { //both boolean and string can use equals
+            for (ArrayList<String> row : S) {
+                int vi = indexOf(v, row.get(attrIndex));
+                if (vi >= 0) {
+                    valueTotals[vi]++;
+                    int ci = indexOf(targetVals, row.get(targetIndex));
+                    if (ci >= 0)
+                        counts[vi * numClasses + ci]++;
+                }
+            }
+        }
+
+        return roundToZero(gain(counts, valueTotals, numClasses, S.size(), entropyS));
+    }
 
+    /**
+     * This method computes gain(S,A) from a contingency table
+     * @param counts the (attribute value x class) counts, stored row by row
+     * @param valueTotals the number of examples with each attribute value (|Sv|)
+     * @param numClasses the number of classes
+     * @param total the number of examples (|S|)
+     * @param entropyS the entropy of S
+     * @return the information gain
+     */
+    private static double gain(int counts[], int valueTotals[], int numClasses, int total, double entropyS) {
+        double runningSum = 0.0;
+        for (int vi = 0; vi < valueTotals.length; vi++) {
+            double svDivS = ((double) valueTotals[vi] / (double) total); // |sv| / |s|
+            runningSum += svDivS * entropy(counts, vi * numClasses, numClasses, valueTotals[vi]);
+        }
+        return entropyS - runningSum;
     }
 
     /**
@@ -95,7 +198,8 @@ public class Compute {
 
     /**
      * This method finds the "best" attribute in dataset based on information gain
-     * (i.e the attribute with the highest information gain)
+     * (i.e the attribute with the highest information gain).
+     * Ties are broken in favour of the attribute that comes first in otherAttributes.
      * @param examples a set of examples
      * @param targetAttribute the target concept
      * @param otherAttributes all other attributes except the target
@@ -103,35 +207,429 @@ public class Compute {
      */
 
     public static Attribute getBestAttribute(ArrayList<ArrayList<String>> examples, Attribute targetAttribute, Attributes otherAttributes){
-        Attribute bestAttr = new Attribute();
-        Double maxGain = 0.0;
-        //create a hashmap of attributes and compute gain for all attributes
-        Map<Attribute, Double> attrGains = new HashMap<Attribute, Double>();
+        Attribute bestAttr = null;
+        double maxGain = 0.0;
+        double entropyS = entropy(examples, targetAttribute); //the same for all attributes
+
         for (Attribute attribute : otherAttributes.getAttributes()) {
-            Double gain = gain(examples, attribute, targetAttribute);
-//            System.out.println("gain of " +attribute.getName() + ": " + gain);
-            attrGains.put(attribute, gain);
+            double gain = gain(examples, attribute, targetAttribute, entropyS);
+            if (bestAttr == null || gain > maxGain) {
+                maxGain = gain;
+                bestAttr = attribute;
+            }
         }
 
-        //find max gain in hashmap
-        if(attrGains.values().size() > 0) {
-            maxGain = Collections.max(attrGains.values());
-            if (maxGain == 0 && otherAttributes.size() > 1)
-                return null;
+        if (bestAttr == null || (maxGain == 0 && otherAttributes.size() > 1))
+            return null;
+
+        return bestAttr;
+    }
+
+    /**
+     * This method finds the best threshold c for a continuous attribute, where the examples are split into
+     * those with A < c and the rest. Candidate thresholds are placed midway between adjacent examples
+     * (in sorted order) that differ in their value and in their target classification.
+     * Instead of rescanning the examples for each candidate, a single sweep over the sorted examples
+     * keeps the class counts of the examples below the current threshold.
+     * The gain of each candidate and the choice of the best one are the same as computing gain(S,A)
+     * for one single-valued attribute per candidate and calling getBestAttribute.
+     * @param values the value of the attribute for each example
+     * @param targets the target code of each example (see getTargetCodes)
+     * @param numClasses the number of values of the target attribute
+     * @param order the indexes of the examples sorted by value (see DataSorter.sort)
+     * @return the best threshold or null if there are no candidates or no candidate has any gain
+     */
+    public static Double getBestThreshold(double values[], int targets[], int numClasses, int order[]) {
+        int total = order.length;
+        int classCounts[] = new int[numClasses];
+        for (int row : order)
+            if (targets[row] >= 0 && targets[row] < numClasses)
+                classCounts[targets[row]]++;
+        double entropyS = entropy(classCounts, 0, numClasses, total); //the same for all thresholds
+
+        int counts[] = new int[numClasses]; //class counts of the examples below the threshold
+        int valueTotals[] = new int[1]; //|Sv|, the number of examples below the threshold
+        int next = 0; //position of the first example that is not below the threshold
+        int numThresholds = 0;
+        Double bestThreshold = null;
+        double maxGain = 0.0;
+
+        for (int i = 1; i < total; i++) {
+            double firstValue = values[order[i - 1]];
+            double nextValue = values[order[i]];
+            if (Double.compare(firstValue, nextValue) != 0 && targets[order[i - 1]] != targets[order[i]]) {
+                double threshold = (firstValue + nextValue) / 2;
+
+                //thresholds increase along the sorted examples so the examples below them only need to be added once
+                while (next < total && Double.compare(values[order[next]], threshold) < 0) { //A < c
+                    int ci = targets[order[next]];
+                    if (ci >= 0 && ci < numClasses)
+                        counts[ci]++;
+                    valueTotals[0]++;
+                    next++;
+                }
+
+                double gain = roundToZero(gain(counts, valueTotals, numClasses, total, entropyS));
+                numThresholds++;
+                if (bestThreshold == null || gain > maxGain) {
+                    maxGain = gain;
+                    bestThreshold = threshold;
+                }
+            }
         }
-        else
+
+        if (bestThreshold == null || (maxGain == 0 && numThresholds > 1))
             return null;
 
-        //find maximum key in hashmap
-        for (Map.Entry<Attribute, Double> entry : attrGains.entrySet()) {
-            Double value = entry.getValue();
+        return bestThreshold;
+    }
 
-            if (value != null && maxGain.equals(value)) {
-                bestAttr = entry.getKey();
+    /**
+     * This method encodes the target of each example as the index of the value in the target attribute.
+     * Targets that are not one of the values are given distinct codes starting at the number of values,
+     * so that examples with different targets always have different codes.
+     * @param S the set of examples
+     * @param targetAttribute the target concept
+     * @return the target code of each example
+     */
+    public static int[] getTargetCodes(ArrayList<ArrayList<String>> S, Attribute targetAttribute) {
+        String targetVals[] = targetAttribute.getValues();
+        int targetIndex = targetAttribute.getIndex();
+        HashMap<String, Integer> codes = new HashMap<String, Integer>();
+        for (int i = 0; i < targetVals.length; i++)
+            if (!codes.containsKey(targetVals[i]))
+                codes.put(targetVals[i], i);
+
+        int targets[] = new int[S.size()];
+        for (int i = 0; i < S.size(); i++) {
+            String target = S.get(i).get(targetIndex);
+            Integer code = codes.get(target);
+            if (code == null) {
+                code = targetVals.length + codes.size();
+                codes.put(target, code);
             }
+            targets[i] = code;
         }
 
-        return bestAttr;
+        return targets;
+    }
+
+    /**
+     * This method computes the entropy of a subset of an encoded dataset
+     * @param S the encoded dataset
+     * @param rows the indexes of the rows in the subset
+     * @param targetAttribute the target concept
+     * @return the entropy
+     */
+    public static Double entropy(Dataset S, int rows[], Attribute targetAttribute) {
+        return entropy(S, rows, 0, rows.length, targetAttribute);
+    }
+
+    /**
+     * This method computes the entropy of the rows rows[from .. to-1] of an encoded dataset
+     * @param S the encoded dataset
+     * @param rows a buffer of row indexes
+     * @param from the position of the first row in the buffer
+     * @param to the position after the last row in the buffer
+     * @param targetAttribute the target concept
+     * @return the entropy
+     */
+    public static Double entropy(Dataset S, int rows[], int from, int to, Attribute targetAttribute) {
+        int classCounts[] = new int[targetAttribute.getValues().length];
+        countClasses(S, rows, from, to, targetAttribute, classCounts);
+        return entropy(classCounts, 0, classCounts.length, to - from);
+    }
+
+    /**
+     * This method computes the information gain --> gain(S,A) on an encoded dataset
+     * @param S the encoded dataset
+     * @param rows the indexes of the rows in the set of examples
+     * @param A the attribute in question
+     * @param targetAttribute the target concept
+     * @return the information gain
+     */
+    public static Double gain(Dataset S, int rows[], Attribute A, Attribute targetAttribute) {
+        return gain(S, rows, 0, rows.length, A, targetAttribute);
+    }
+
+    /**
+     * This method computes the information gain --> gain(S,A) of the rows rows[from .. to-1] of an encoded dataset
+     * @param S the encoded dataset
+     * @param rows a buffer of row indexes
+     * @param from the position of the first row in the buffer
+     * @param to the position after the last row in the buffer
+     * @param A the attribute in question
+     * @param targetAttribute the target concept
+     * @return the information gain
+     */
+    public static Double gain(Dataset S, int rows[], int from, int to, Attribute A, Attribute targetAttribute) {
+        return gain(S, rows, from, to, A, targetAttribute, entropy(S, rows, from, to, targetAttribute));
+    }
+
+    /**
+     * This method computes gain(S,A) on an encoded dataset given Entropy(S)
+     * by filling a table of (value code x class code) counts in one pass over the rows
+     * @param S the encoded dataset
+     * @param rows a buffer of row indexes
+     * @param from the position of the first row in the buffer
+     * @param to the position after the last row in the buffer
+     * @param A the attribute in question
+     * @param targetAttribute the target concept
+     * @param entropyS the entropy of the rows
+     * @return the information gain
+     */
+    private static double gain(Dataset S, int rows[], int from, int to, Attribute A, Attribute targetAttribute, double entropyS) {
+        int numValues = A.getValues().length;
+        int numClasses = targetAttribute.getValues().length;
+        int counts[] = new int[numValues * numClasses];
+        int valueTotals[] = new int[numValues]; // |Sv|
+        int targetCodes[] = S.getCodes(targetAttribute.getIndex());
+        int column = A.getIndex();
+
+        if (S.isNumeric(column)) {
+            double thresholds[] = parseThresholds(A.getValues());
+            double values[] = S.getValues(column);
+            for (int i = from; i < to; i++) {
+                int row = rows[i];
+                int ci = targetCodes[row];
+                for (int vi = 0; vi < thresholds.length; vi++) {
+                    if (Double.compare(values[row], thresholds[vi]) < 0) { //A < c
+                        valueTotals[vi]++;
+                        if (ci >= 0 && ci < numClasses)
+                            counts[vi * numClasses + ci]++;
+                    }
+                }
+            }
+        }
+        else {
+            int codes[] = S.getCodes(column);
+            for (int i = from; i < to; i++) {
+                int row = rows[i];
+                int vi = codes[row];
+                if (vi >= 0 && vi < numValues) {
+                    valueTotals[vi]++;
+                    int ci = targetCodes[row];
+                    if (ci >= 0 && ci < numClasses)
+                        counts[vi * numClasses + ci]++;
+                }
+            }
+        }
+
+        return roundToZero(gain(counts, valueTotals, numClasses, to - from, entropyS));
+    }
+
+    /**
+     * This method returns the rows of an encoded dataset with a certain value for an attribute.
+     * For continuous attributes, the value of the attribute is the threshold c and the rows with A < c
+     * are returned.
+     * @param S the encoded dataset
+     * @param rows the indexes of the rows to select from
+     * @param vi the index of the value in A.getValues()
+     * @param A the attribute, whose index is also the column of the dataset
+     * @return the indexes of the rows matching the value
+     */
+    public static int[] Sv(Dataset S, int rows[], int vi, Attribute A) {
+        int column = A.getIndex();
+        int sv[] = new int[rows.length];
+        int count = 0;
+
+        if (S.isNumeric(column)) {
+            double c = Double.parseDouble(A.getValues()[vi]);
+            double values[] = S.getValues(column);
+            for (int row : rows)
+                if (Double.compare(values[row], c) < 0) //A < c
+                    sv[count++] = row;
+        }
+        else {
+            int codes[] = S.getCodes(column);
+            for (int row : rows)
+                if (codes[row] == vi)
+                    sv[count++] = row;
+        }
+
+        return Arrays.copyOf(sv, count);
+    }
+
+    /**
+     * This method finds the attribute with the highest information gain on an encoded dataset.
+     * Ties are broken in favour of the attribute that comes first in otherAttributes.
+     * @param examples the encoded dataset
+     * @param rows the indexes of the rows in the set of examples
+     * @param targetAttribute the target concept
+     * @param otherAttributes all other attributes except the target
+     * @return the attribute with the highest information gain from a list of attributes
+     */
+    public static Attribute getBestAttribute(Dataset examples, int rows[], Attribute targetAttribute, Attributes otherAttributes){
+        return getBestAttribute(examples, rows, targetAttribute, otherAttributes, null, 0);
+    }
+
+    /**
+     * This method finds the attribute with the highest information gain on an encoded dataset,
+     * evaluating the candidate attributes concurrently on a ForkJoinPool.
+     * The gains are reduced in attribute order so the result (including ties) is the same
+     * as the sequential method. If there is no pool, fewer than minRows rows or a single
+     * candidate attribute, the sequential method is used.
+     * @param examples the encoded dataset
+     * @param rows the indexes of the rows in the set of examples
+     * @param targetAttribute the target concept
+     * @param otherAttributes all other attributes except the target
+     * @param pool the pool used to evaluate the attributes (may be null)
+     * @param minRows the minimum number of rows for which the attributes are evaluated in parallel
+     * @return the attribute with the highest information gain from a list of attributes
+     */
+    public static Attribute getBestAttribute(Dataset examples, int rows[], Attribute targetAttribute, Attributes otherAttributes,
+                                             ForkJoinPool pool, int minRows){
+        ArrayList<Attribute> candidates = otherAttributes.getAttributes();
+        BitSet available = new BitSet(candidates.size());
+        available.set(0, candidates.size());
+        return getBestAttribute(examples, rows, 0, rows.length, targetAttribute, candidates, available, pool, minRows);
+    }
+
+    /**
+     * This method finds the attribute with the highest information gain for the rows rows[from .. to-1]
+     * of an encoded dataset, considering only the candidates whose position is set in available.
+     * Ties are broken in favour of the candidate that comes first.
+     * @param examples the encoded dataset
+     * @param rows a buffer of row indexes
+     * @param from the position of the first row in the buffer
+     * @param to the position after the last row in the buffer
+     * @param targetAttribute the target concept
+     * @param candidates all attributes except the target
+     * @param available the positions of the candidates that can still be used
+     * @param pool the pool used to evaluate the attributes (may be null)
+     * @param minRows the minimum number of rows for which the attributes are evaluated in parallel
+     * @return the attribute with the highest information gain or null
+     */
+    public static Attribute getBestAttribute(Dataset examples, int rows[], int from, int to, Attribute targetAttribute,
+                                             ArrayList<Attribute> candidates, BitSet available, ForkJoinPool pool, int minRows){
+        int numAvailable = available.cardinality();
+        if (numAvailable == 0)
+            return null;
+
+        int positions[] = new int[numAvailable];
+        for (int i = available.nextSetBit(0), j = 0; i >= 0; i = available.nextSetBit(i + 1))
+            positions[j++] = i;
+
+        double gains[] = new double[numAvailable];
+        double entropyS = entropy(examples, rows, from, to, targetAttribute); //the same for all attributes
+
+        if (pool == null || to - from < minRows || numAvailable < 2) {
+            for (int i = 0; i < numAvailable; i++)
+                gains[i] = gain(examples, rows, from, to, candidates.get(positions[i]), targetAttribute, entropyS);
+        }
+        else {
+            GainTask task = new GainTask(examples, rows, from, to, targetAttribute, candidates, positions, entropyS, gains, 0, numAvailable);
+            if (ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool)
+                task.invoke(); //already running in the pool (e.g. while building a subtree)
+            else
+                pool.invoke(task);
+        }
+
+        //reduce in attribute order so that the first attribute with the maximum gain wins
+        int best = 0;
+        for (int i = 1; i < numAvailable; i++)
+            if (gains[i] > gains[best])
+                best = i;
+
+        if (gains[best] == 0 && numAvailable > 1)
+            return null;
+
+        return candidates.get(positions[best]);
+    }
+
+    /**
+     * This class computes the gain of a range of candidate attributes,
+     * splitting the range in half until a single attribute remains
+     */
+    private static class GainTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private Dataset examples;
+        private int rows[];
+        private int rowsFrom;
+        private int rowsTo;
+        private Attribute targetAttribute;
+        private ArrayList<Attribute> candidates;
+        private int positions[]; //the positions of the available candidates
+        private double entropyS;
+        private double gains[];
+        private int from;
+        private int to;
+
+        GainTask(Dataset examples, int rows[], int rowsFrom, int rowsTo, Attribute targetAttribute, ArrayList<Attribute> candidates,
+                 int positions[], double entropyS, double gains[], int from, int to) {
+            this.examples = examples;
+            this.rows = rows;
+            this.rowsFrom = rowsFrom;
+            this.rowsTo = rowsTo;
+            this.targetAttribute = targetAttribute;
+            this.candidates = candidates;
+            this.positions = positions;
+            this.entropyS = entropyS;
+            this.gains = gains;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                gains[from] = gain(examples, rows, rowsFrom, rowsTo, candidates.get(positions[from]), targetAttribute, entropyS);
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new GainTask(examples, rows, rowsFrom, rowsTo, targetAttribute, candidates, positions, entropyS, gains, from, mid),
+                    new GainTask(examples, rows, rowsFrom, rowsTo, targetAttribute, candidates, positions, entropyS, gains, mid, to));
+        }
+    }
+
+    /**
+     * This method counts the number of examples in each class
+     * @param S the set of examples
+     * @param targetAttribute the target concept
+     * @param classCounts the array in which the count of each class is stored
+     */
+    private static void countClasses(ArrayList<ArrayList<String>> S, Attribute targetAttribute, int classCounts[]) {
+        String targetVals[] = targetAttribute.getValues();
+        int targetIndex = targetAttribute.getIndex();
+        for (ArrayList<String> example : S) {
+            int ci = indexOf(targetVals, example.get(targetIndex));
+            if (ci >= 0)
+                classCounts[ci]++;
+        }
+    }
+
+    /**
+     * This method counts the number of rows rows[from .. to-1] of an encoded dataset in each class
+     * @param S the encoded dataset
+     * @param rows a buffer of row indexes
+     * @param from the position of the first row in the buffer
+     * @param to the position after the last row in the buffer
+     * @param targetAttribute the target concept
+     * @param classCounts the array in which the count of each class is stored
+     */
+    private static void countClasses(Dataset S, int rows[], int from, int to, Attribute targetAttribute, int classCounts[]) {
+        int targetCodes[] = S.getCodes(targetAttribute.getIndex());
+        for (int i = from; i < to; i++) {
+            int ci = targetCodes[rows[i]];
+            if (ci >= 0 && ci < classCounts.length)
+                classCounts[ci]++;
+        }
+    }
+
+    private static int indexOf(String values[], String value) {
+        for (int i = 0; i < values.length; i++)
+            if (values[i].equals(value))
+                return i;
+        return -1;
+    }
+
+    private static double[] parseThresholds(String values[]) {
+        double thresholds[] = new double[values.length];
+        for (int i = 0; i < values.length; i++)
+            thresholds[i] = Double.parseDouble(values[i]);
+        return thresholds;
     }
 
 }
@@ -20,4 +20,42 @@ public class DataSorter implements Comparator<ArrayList<String>> {
     public void setSortingIndex(int index) {
         this.sortingIndex = index;
     }
+
+    /**
+     * This method sorts a list of row indexes by the (already parsed) values of a continuous column.
+     * The sort is a stable merge sort, so rows with equal values keep their relative order,
+     * as with Collections.sort and this comparator.
+     * @param indexes the row indexes to sort
+     * @param values the value of each row (indexed by row)
+     */
+    public static void sort(int indexes[], double values[]) {
+        int buffer[] = new int[indexes.length];
+        int src[] = indexes;
+        int dest[] = buffer;
+
+        //merge runs of width 1, 2, 4, ... alternating between the two arrays
+        for (int width = 1; width < indexes.length; width *= 2) {
+            for (int lo = 0; lo < indexes.length; lo += 2 * width) {
+                int mid = Math.min(lo + width, indexes.length);
+                int hi = Math.min(lo + 2 * width, indexes.length);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) {
+                    if (Double.compare(values[src[j]], values[src[i]]) < 0)
+                        dest[k++] = src[j++];
+                    else
+                        dest[k++] = src[i++]; //take from the left run on ties to keep the sort stable
+                }
+                while (i < mid)
+                    dest[k++] = src[i++];
+                while (j < hi)
+                    dest[k++] = src[j++];
+            }
+            int temp[] = src;
+            src = dest;
+            dest = temp;
+        }
+
+        if (src != indexes)
+            System.arraycopy(src, 0, indexes, 0, indexes.length);
+    }
 }